@@ -0,0 +1,96 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.artifacts.ArtifactCollection;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.workers.WorkerExecutor;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resolves the artifacts of every resolvable configuration of its project leniently and collects those whose
+ * verification failed, as listed by the failure itself; artifacts that pass, whether by checksum, by signature or as
+ * trusted, are left alone. Their checksums are fetched from the repositories, never taken from Gradle's unverified
+ * module cache, by {@link UpdateVerificationMetadataAction} on the worker API, and merged into the metadata file.
+ * <p>
+ * The failures are wired in as providers when the task is configured, so the project is not needed at execution time;
+ * with the configuration cache, they are gathered when Gradle resolves the configurations to store the entry. The
+ * tasks of several projects take turns with the metadata file through {@link MetadataFileLock}.
+ * <p>
+ * Gradle reads the metadata file once per build, so tasks that already failed verification in this build are not
+ * retried; run this task on its own, e.g. {@code ./gradlew updateVerificationMetadata}.
+ */
+public abstract class UpdateVerificationMetadata extends DefaultTask {
+
+    public UpdateVerificationMetadata() {
+        getOutputs().upToDateWhen(task -> false); // depends on the state of the repositories and Gradle's cache
+    }
+
+    /** Read and rewritten in place. */
+    @Internal
+    public abstract RegularFileProperty getMetadataFile();
+
+    /** Failure lists in the format of Gradle's report, e.g. from {@link #failures}. */
+    @Internal
+    public abstract ListProperty<String> getReport();
+
+    @Inject
+    protected abstract WorkerExecutor getWorkerExecutor();
+
+    @TaskAction
+    public void update() {
+        final List<String> report = getReport().get();
+        if (report.isEmpty()) {
+            getLogger().info("no artifacts failed verification");
+            return;
+        }
+        getWorkerExecutor().noIsolation().submit(UpdateVerificationMetadataAction.class, params -> {
+            params.getMetadataFile().set(getMetadataFile());
+            params.getReport().set(report);
+        });
+    }
+
+    /** Resolves the collection and returns its verification failure lists. */
+    static List<String> failures(ArtifactCollection artifacts) {
+        final List<String> report = new ArrayList<>();
+        Collection<Throwable> failures;
+        try {
+            artifacts.getArtifacts(); // resolves
+            failures = artifacts.getFailures();
+        } catch (RuntimeException e) { // strict verification fails the whole view, lenient or not
+            failures = Collections.singletonList(e);
+        }
+        for (Throwable failure : failures) {
+            for (Throwable t = failure; t != null; t = t.getCause()) {
+                final String message = t.getMessage();
+                if (message != null && message.contains(" from repository ")) { // the list of artifacts that failed
+                    report.add(message);
+                    break;
+                }
+            }
+        }
+        return report;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves the artifacts of a report that the metadata file does not yet list, on a {@link ConcurrentResolver}, and
+ * merges them into the file. Configured by the same system properties as the command line, e.g.
+ * {@code verification.repositories}, except that copies in Gradle's module cache are never hashed: they are what
+ * failed verification, so only the repositories are trusted.
+ */
+public abstract class UpdateVerificationMetadataAction implements WorkAction<UpdateVerificationMetadataAction.Parameters> {
+
+    public interface Parameters extends WorkParameters {
+        RegularFileProperty getMetadataFile();
+
+        /** Failure lists, or single entries, in the format of Gradle's report. */
+        ListProperty<String> getReport();
+    }
+
+    private static final Logger LOGGER = Logging.getLogger(UpdateVerificationMetadataAction.class);
+
+    @Override
+    public void execute() {
+        try {
+            update();
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    private void update() throws IOException {
+        final Path metadataFile = getParameters().getMetadataFile().get().getAsFile().toPath();
+        if (!Files.isRegularFile(metadataFile)) {
+            LOGGER.lifecycle("{} not found; dependency verification is not enabled", metadataFile);
+            return;
+        }
+        final MetadataMerger merger = MetadataMerger.index(metadataFile);
+        final RepositoryRegistry registry = RepositoryRegistry.fromSystemProperties();
+        final List<Repository> anyRepository = registry.all(System.getProperty("verification.graphRepositories", GraphWalker.DEFAULT_REPOSITORIES));
+        final ConcurrentHashMap<String, Component> components = new ConcurrentHashMap<>(128);
+        try (FetchPolicy fetcher = FetchPolicy.fromSystemProperties(new LazyFetcher(Fetcher::create));
+             HashResolver hashes = HashResolver.fromSystemProperties(fetcher, LocalArtifactStore.none());
+             ConcurrentResolver resolver = ConcurrentResolver.fromSystemProperties(hashes)) {
+            fetcher.logTo(LOGGER::warn);
+            hashes.logTo(LOGGER::info);
+            parse(getParameters().getReport().get(), (id, repository) -> {
+                if (!merger.contains(id)) {
+                    final List<Repository> repos = registry.get(repository);
+                    resolver.submit(id, repos != null ? repos : anyRepository, components);
+                }
+            });
+            resolver.awaitAll();
+            LOGGER.info(hashes.stats());
+        }
+        if (components.isEmpty()) {
+            LOGGER.lifecycle("{} is up to date", metadataFile);
+            return;
+        }
+        merger.merge(components.values());
+        int artifacts = 0;
+        for (Component c : components.values()) {
+            artifacts += c.artifacts.size();
+        }
+        LOGGER.lifecycle("added {} artifacts of {} components to {}", artifacts, components.size(), metadataFile);
+    }
+
+    /**
+     * Passes each artifact of the report's failure lists to the handler.
+     *
+     * @throws GradleException  if an entry of a failure list is malformed, or a failure lists no artifacts, so that the
+     *                          task fails rather than succeed without adding them
+     */
+    static void parse(List<String> report, FailureReportParser.Handler handler) throws IOException {
+        for (String text : report) {
+            final ByteArrayOutputStream diagnostics = new ByteArrayOutputStream();
+            final FailureReportParser parser = new FailureReportParser(new StringReader(text), new PrintStream(diagnostics, true, "UTF-8"));
+            final int count = parser.parse(handler);
+            for (String line : new String(diagnostics.toByteArray(), StandardCharsets.UTF_8).split("\\R")) {
+                if (!line.isEmpty()) {
+                    LOGGER.warn(line);
+                }
+            }
+            if (count == 0 || parser.malformed() > 0) {
+                throw new GradleException("could not read the artifacts of a verification failure:\n" + text);
+            }
+        }
+    }
+}
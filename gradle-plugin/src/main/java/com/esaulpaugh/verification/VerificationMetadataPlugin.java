@@ -0,0 +1,56 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+import org.gradle.api.artifacts.ArtifactCollection;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.provider.Provider;
+
+/**
+ * Adds the task {@code updateVerificationMetadata} to this project and its subprojects. Each adds the artifacts that
+ * fail dependency verification in its own project to the build's {@code gradle/verification-metadata.xml}. See
+ * {@link UpdateVerificationMetadata}.
+ */
+public class VerificationMetadataPlugin implements Plugin<Project> {
+
+    static final String TASK_NAME = "updateVerificationMetadata";
+    static final String LOCK_NAME = "verificationMetadataFile";
+
+    @Override
+    public void apply(Project project) {
+        final Provider<MetadataFileLock> lock = project.getGradle().getSharedServices()
+                .registerIfAbsent(LOCK_NAME, MetadataFileLock.class, spec -> spec.getMaxParallelUsages().set(1));
+        project.getTasks().register(TASK_NAME, UpdateVerificationMetadata.class, task -> {
+            task.setGroup("verification");
+            task.setDescription("Adds the checksums of artifacts that fail dependency verification to the verification metadata.");
+            task.getMetadataFile().convention(
+                    project.getRootProject().getLayout().getProjectDirectory().file("gradle/verification-metadata.xml")
+            );
+            task.usesService(lock);
+            for (Configuration c : project.getConfigurations()) {
+                if (c.isCanBeResolved()) {
+                    final ArtifactCollection artifacts = c.getIncoming().artifactView(view -> view.lenient(true)).getArtifacts();
+                    task.getReport().addAll(project.provider(() -> UpdateVerificationMetadata.failures(artifacts)));
+                }
+            }
+        });
+        if (project == project.getRootProject()) {
+            project.subprojects(p -> p.getPluginManager().apply(VerificationMetadataPlugin.class));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.artifacts.ArtifactCollection;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class UpdateVerificationMetadataTest {
+
+    private static final String ONE = "Dependency verification failed for configuration ':compileClasspath'\n"
+            + "One artifact failed verification: gson-2.8.9.jar (com.google.code.gson:gson:2.8.9) from repository MavenRepo\n"
+            + "If the artifacts are trustworthy, you will need to update the gradle/verification-metadata.xml file.";
+
+    private static final String TWO = "Dependency verification failed for configuration ':runtimeClasspath'\n"
+            + "2 artifacts failed verification:\n"
+            + "  - f-1.jar (g.x:f:1) from repository maven\n"
+            + "  - f-1.pom (g.x:f:1) from repository maven\n"
+            + "If the artifacts are trustworthy, you will need to update the gradle/verification-metadata.xml file.";
+
+    /** @return a collection whose resolution throws {@code thrown}, if not null, or else reports {@code failures} */
+    private static ArtifactCollection collection(RuntimeException thrown, Throwable... failures) {
+        return (ArtifactCollection) Proxy.newProxyInstance(
+                ArtifactCollection.class.getClassLoader(),
+                new Class<?>[] { ArtifactCollection.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "getArtifacts":
+                        if (thrown != null) throw thrown;
+                        return Collections.emptySet();
+                    case "getFailures": return Arrays.asList(failures);
+                    default: throw new UnsupportedOperationException(method.getName());
+                    }
+                }
+        );
+    }
+
+    private static List<String> parse(List<String> report) throws IOException {
+        final List<String> artifacts = new ArrayList<>();
+        UpdateVerificationMetadataAction.parse(report, (id, repository) ->
+                artifacts.add(id.group + ':' + id.name + ':' + id.version + ':' + id.file + '@' + repository));
+        return artifacts;
+    }
+
+    @Test
+    public void strictFailure() throws IOException {
+        final List<String> report = UpdateVerificationMetadata.failures(
+                collection(new RuntimeException("Could not resolve all files", new RuntimeException(ONE)))
+        );
+        assertEquals(Collections.singletonList(ONE), report);
+        assertEquals(Collections.singletonList("com.google.code.gson:gson:2.8.9:gson-2.8.9.jar@MavenRepo"), parse(report));
+    }
+
+    @Test
+    public void lenientFailures() throws IOException {
+        final List<String> report = UpdateVerificationMetadata.failures(
+                collection(null, new RuntimeException("wrapper", new RuntimeException(TWO)), new RuntimeException(ONE),
+                        new RuntimeException("Could not find g.x:missing:1."))
+        );
+        assertEquals(Arrays.asList(TWO, ONE), report);
+        assertEquals(
+                Arrays.asList("g.x:f:1:f-1.jar@maven", "g.x:f:1:f-1.pom@maven", "com.google.code.gson:gson:2.8.9:gson-2.8.9.jar@MavenRepo"),
+                parse(report)
+        );
+    }
+
+    @Test
+    public void noFailures() throws IOException {
+        final List<String> report = UpdateVerificationMetadata.failures(collection(null));
+        assertEquals(Collections.emptyList(), report);
+        assertEquals(Collections.emptyList(), parse(report));
+    }
+
+    @Test
+    public void unreadableFailure() {
+        assertThrows(GradleException.class, () -> parse(Collections.singletonList(
+                "Dependency verification failed\n  - f-1.jar g.x:f:1 from repository maven"
+        )));
+        assertThrows(GradleException.class, () -> parse(Collections.singletonList(
+                "3 artifacts failed verification, listed in a format from repository nobody expected"
+        )));
+    }
+}
@@ -0,0 +1,185 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.headlong.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FastHexBenchmark {
+
+    @Param({ "20", "32", "64", "4096" })
+    public int len;
+
+    private byte[] bytes;
+    private String hex;
+    private byte[] hexBytes;
+    private StringBuilder hexBuilder;
+    private ByteBuffer hexDirect;
+    private byte[] dest;
+    private byte[] encoded;
+    private char[] encodedChars;
+    private StringBuilder sb;
+    private ByteBuffer encodedDirect;
+
+    @Setup
+    public void setUp() {
+        bytes = new byte[len];
+        new Random(len).nextBytes(bytes);
+        hex = FastHex.encodeToString(bytes);
+        hexBytes = hex.getBytes(StandardCharsets.US_ASCII);
+        hexBuilder = new StringBuilder(hex);
+        hexDirect = ByteBuffer.allocateDirect(hexBytes.length);
+        hexDirect.put(hexBytes);
+        dest = new byte[len];
+        encoded = new byte[len * FastHex.CHARS_PER_BYTE];
+        encodedChars = new char[len * FastHex.CHARS_PER_BYTE];
+        sb = new StringBuilder(len * FastHex.CHARS_PER_BYTE);
+        encodedDirect = ByteBuffer.allocateDirect(len * FastHex.CHARS_PER_BYTE);
+    }
+
+    @Benchmark
+    public String encodeToString() {
+        return FastHex.encodeToString(bytes);
+    }
+
+    @Benchmark
+    public byte[] encodeToBytes() {
+        return FastHex.encodeToBytes(bytes);
+    }
+
+    @Benchmark
+    public int encodeToBytesInto() {
+        return FastHex.encodeToBytes(bytes, 0, bytes.length, encoded, 0);
+    }
+
+    @Benchmark
+    public int encodeToCharsInto() {
+        return FastHex.encodeToChars(bytes, 0, bytes.length, encodedChars, 0);
+    }
+
+    @Benchmark
+    public StringBuilder encodeToStringBuilder() {
+        sb.setLength(0);
+        return FastHex.encode(bytes, 0, bytes.length, sb);
+    }
+
+    @Benchmark
+    public ByteBuffer encodeToDirectBuffer() {
+        encodedDirect.clear();
+        return FastHex.encode(bytes, 0, bytes.length, encodedDirect);
+    }
+
+    @Benchmark
+    public byte[] decodeString() {
+        return FastHex.decode(hex);
+    }
+
+    @Benchmark
+    public byte[] decodeStringRange() {
+        return FastHex.decode(hex, 0, hex.length());
+    }
+
+    @Benchmark
+    public byte[] decodeBytes() {
+        return FastHex.decode(hexBytes, 0, hexBytes.length);
+    }
+
+    @Benchmark
+    public byte[] decodeCharSequence() {
+        return FastHex.decode(hexBuilder, 0, hexBuilder.length());
+    }
+
+    @Benchmark
+    public int decodeBytesInto() {
+        return FastHex.decode(hexBytes, 0, hexBytes.length, dest, 0);
+    }
+
+    /** The SWAR alternative to {@link #decodeBytesInto()}'s table lookups. See {@link #decodeSwar}. */
+    @Benchmark
+    public int decodeBytesIntoSwar() {
+        return decodeSwar(hexBytes, dest);
+    }
+
+    @Benchmark
+    public int decodeStringInto() {
+        return FastHex.decode(hex, 0, hex.length(), dest, 0);
+    }
+
+    @Benchmark
+    public int decodeDirectBufferInto() {
+        hexDirect.clear();
+        return FastHex.decode(hexDirect, dest, 0);
+    }
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long LOW_NIBBLES = 0x0F0F0F0F0F0F0F0FL;
+
+    /**
+     * Decodes eight chars per iteration, read as one big-endian {@code long} and validated and converted to nibbles
+     * together (SWAR, SIMD within a register). Kept here rather than in {@link FastHex}: on Java 8 it measured about
+     * 1.5x slower than the table lookups at every {@link #len}, and on Java 17 roughly level up to 64 bytes and slower
+     * at 4096.
+     */
+    private static int decodeSwar(byte[] hexBytes, byte[] dest) {
+        final ByteBuffer words = ByteBuffer.wrap(hexBytes);
+        final int blocks = hexBytes.length / 8;
+        long invalid = 0;
+        for (int b = 0; b < blocks; b++) {
+            final long x = words.getLong(b * 8);
+            final long digit = atLeast(x, '0') & ~atLeast(x, '9' + 1);
+            final long lower = x | 0x2020202020202020L; // 'A'-'F' to 'a'-'f'; nothing else lands there
+            final long letter = atLeast(lower, 'a') & ~atLeast(lower, 'f' + 1);
+            invalid |= ((digit | letter) ^ HIGH_BITS) | (x & HIGH_BITS);
+            final long letters = (x >>> 6) & ONES; // letters are 9 short of their value
+            final long nibbles = (x & LOW_NIBBLES) + (letters << 3) + letters;
+            final long pairs = (nibbles >>> 4 | nibbles) & 0x00FF00FF00FF00FFL;
+            final int j = b * 4;
+            dest[j] = (byte) (pairs >>> 48);
+            dest[j+1] = (byte) (pairs >>> 32);
+            dest[j+2] = (byte) (pairs >>> 16);
+            dest[j+3] = (byte) pairs;
+        }
+        if (invalid != 0) throw new IllegalArgumentException("illegal hex val");
+        final int done = blocks * 8;
+        return blocks * 4 + FastHex.decode(hexBytes, done, hexBytes.length - done, dest, blocks * 4);
+    }
+
+    /** @return the high bit of each byte set iff the low seven bits of that byte of {@code x} are at least {@code c} */
+    private static long atLeast(long x, int c) {
+        return ((x | HIGH_BITS) - ONES * c) & HIGH_BITS;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import com.esaulpaugh.headlong.util.FastHex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/** Measures {@link HashResolver#readHash} and the digest loop behind {@code downloadAndHash} against in-memory streams. */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HashingBenchmark {
+
+    @Param({ "4096", "1048576", "16777216" })
+    public int artifactLen;
+
+    private byte[] artifact;
+    private byte[] sidecar;
+    private MessageDigest sha256;
+    private MessageDigest[] all;
+    private ExecutorService helpers;
+
+    @Setup
+    public void setUp() {
+        artifact = new byte[artifactLen];
+        new Random(artifactLen).nextBytes(artifact);
+        sha256 = Checksum.SHA256.newMessageDigest();
+        sidecar = FastHex.encodeToString(sha256.digest(artifact)).getBytes(StandardCharsets.US_ASCII);
+        all = new MessageDigest[] {
+                Checksum.SHA1.newMessageDigest(),
+                Checksum.SHA256.newMessageDigest(),
+                Checksum.SHA512.newMessageDigest()
+        };
+        helpers = Executors.newFixedThreadPool(all.length - 1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        helpers.shutdownNow();
+    }
+
+    @Benchmark
+    public Digest readHash() throws IOException {
+        return HashResolver.readHash(new ByteArrayInputStream(sidecar), Checksum.SHA256);
+    }
+
+    @Benchmark
+    public String downloadAndHash() throws IOException {
+        return FastHex.encodeToString(Hashing.digest(new ByteArrayInputStream(artifact), null, sha256)[0]);
+    }
+
+    @Benchmark
+    public byte[][] downloadAndHashThreeChecksums() throws IOException {
+        return Hashing.digest(new ByteArrayInputStream(artifact), helpers, all);
+    }
+}
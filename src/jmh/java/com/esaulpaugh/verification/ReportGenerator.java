@@ -0,0 +1,57 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+/**
+ * Generates synthetic Gradle dependency verification failure reports. Entries cycle through a fixed set of distinct
+ * artifacts, so large reports repeat entries the way real ones do across configurations.
+ */
+final class ReportGenerator {
+
+    static final String[] REPOSITORIES = { "MavenRepo", "Google", "Gradle Central Plugin Repository" };
+
+    private ReportGenerator() {}
+
+    /**
+     * @param lines         the number of entries
+     * @param distinct      the number of distinct artifacts among them
+     * @param indent        spaces before each {@code "- "}
+     * @param repositories  repository names, assigned round-robin
+     */
+    static String generate(int lines, int distinct, int indent, String... repositories) {
+        final StringBuilder sb = new StringBuilder(lines * 96)
+                .append("Dependency verification failed for configuration ':compileClasspath'\n");
+        for (int i = 0; i < lines; i++) {
+            final int n = i % distinct;
+            for (int j = 0; j < indent; j++) {
+                sb.append(' ');
+            }
+            final String name = "artifact-" + (n % 997);
+            final String version = (n % 13) + ".0." + (n % 7);
+            sb.append("- ").append(name).append('-').append(version).append(n % 2 == 0 ? ".jar" : ".pom")
+                    .append(" (org.example.group").append(n % 31).append(':').append(name).append(':').append(version)
+                    .append(") from repository ").append(repositories[n % repositories.length]).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /** Prints a report of {@code args[0]} entries (default 10000) to stdout, for use with {@link MockRepository#main}. */
+    public static void main(String[] args) {
+        final int lines = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        final int distinct = args.length > 1 ? Integer.parseInt(args[1]) : lines;
+        System.out.print(generate(lines, distinct, 2, "MavenRepo"));
+    }
+}
@@ -0,0 +1,128 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves a generated failure report end to end against a {@link MockRepository}, with a cold in-memory cache each
+ * time, and checks every resolved checksum against the content served. The fetcher, like the one a run creates once,
+ * is shared by all iterations.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ResolverBenchmark {
+
+    @Param({ "2000" })
+    public int lines;
+
+    @Param({ "4", "16", "64" })
+    public int parallelism;
+
+    @Param({ "0", "20" })
+    public int latencyMillis;
+
+    @Param({ "0.2" })
+    public double missingSidecarRatio;
+
+    private MockRepository repository;
+    private Fetcher fetcher;
+    private List<Repository> repos;
+    private String report;
+
+    private final PrintStream discard = new PrintStream(new OutputStream() {
+        @Override
+        public void write(int b) {}
+    });
+    private PrintStream stderr;
+
+    @Setup
+    public void setUp() throws IOException {
+        final MockRepository.Profile profile = new MockRepository.Profile();
+        profile.latencyMillis = latencyMillis;
+        profile.missingSidecarRatio = missingSidecarRatio;
+        repository = new MockRepository(profile);
+        fetcher = FetchPolicy.fromSystemProperties(Fetcher.create());
+        repos = Collections.singletonList(new Repository(repository.url()));
+        report = ReportGenerator.generate(lines, lines / 2, 2, "MavenRepo");
+        stderr = System.err;
+        System.setErr(discard); // one progress line per artifact
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setErr(stderr);
+        fetcher.close();
+        repository.close();
+    }
+
+    @Benchmark
+    public int resolve() throws IOException {
+        final Checksum[] checksums = { Checksum.SHA256 };
+        final EnumMap<Checksum, ChecksumCache> caches = new EnumMap<>(Checksum.class);
+        caches.put(Checksum.SHA256, ChecksumCache.inMemory(Checksum.SHA256.hexChars));
+        final ConcurrentHashMap<String, Component> components = new ConcurrentHashMap<>(lines);
+        try (HashResolver hashes = new HashResolver(checksums, fetcher, caches, LocalArtifactStore.none(), true);
+             ConcurrentResolver resolver = new ConcurrentResolver(hashes, parallelism, parallelism)) {
+            new FailureReportParser(new StringReader(report), discard)
+                    .parse((id, repository) -> resolver.submit(id, repos, components));
+            resolver.seal(components);
+            resolver.awaitAll();
+        }
+        return verify(components);
+    }
+
+    private int verify(Map<String, Component> components) {
+        int artifacts = 0;
+        for (Component c : components.values()) {
+            for (Artifact a : c.artifacts) {
+                final String path = new ArtifactId(c.group, c.name, c.version, a.name).path();
+                if (!repository.expected(path, Checksum.SHA256).equals(a.hashes.get(Checksum.SHA256))) {
+                    throw new AssertionError("wrong sha256 for " + path);
+                }
+                artifacts++;
+            }
+        }
+        if (artifacts != lines / 2) throw new AssertionError(artifacts + " != " + lines / 2);
+        return artifacts;
+    }
+}
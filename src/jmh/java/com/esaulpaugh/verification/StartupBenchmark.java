@@ -0,0 +1,134 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times one whole run of the command line tool, as a pre-commit hook would start it, for a short report whose
+ * artifacts are all in the checksum cache, so that startup dominates and no network is needed. Compares launchers:
+ * <ul>
+ * <li>{@code jvm}: {@code java -cp <jar>}; the jar is {@code -Dstartup.jar}</li>
+ * <li>{@code cds}: the same with the archive from {@code ./gradlew cdsArchive}, {@code -Dstartup.cds}</li>
+ * <li>{@code native}: the executable from {@code ./gradlew nativeImage}, {@code -Dstartup.native}</li>
+ * </ul>
+ * Only {@code jvm} runs by default; e.g. {@code -p launcher=jvm,cds,native} selects the others. Paths default to
+ * those the build writes, relative to the project directory.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StartupBenchmark {
+
+    private static final String MAIN = "com.esaulpaugh.verification.ParserGenerator";
+
+    @Param({ "jvm" })
+    public String launcher;
+
+    @Param({ "20" })
+    public int lines;
+
+    private List<String> command;
+    private File output;
+
+    @Setup
+    public void setUp() throws IOException {
+        final Path dir = Files.createTempDirectory("startup");
+        final Path report = dir.resolve("report.txt");
+        final String text = ReportGenerator.generate(lines, lines, 4, ReportGenerator.REPOSITORIES);
+        Files.write(report, text.getBytes(StandardCharsets.UTF_8));
+        fillCache(text, dir);
+        output = dir.resolve("out.xml").toFile();
+
+        final Path jar = existing("startup.jar", "build/libs/VerificationMetadataGenerator-0.1-SNAPSHOT.jar", "./gradlew jar");
+        final String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        command = new ArrayList<>();
+        switch (launcher) {
+        case "jvm": command.addAll(Arrays.asList(java, "-cp", jar.toString())); break;
+        case "cds":
+            final Path archive = existing("startup.cds", "build/cds/verification-metadata-gen.jsa", "./gradlew cdsArchive");
+            command.addAll(Arrays.asList(java, "-XX:SharedArchiveFile=" + archive, "-Xshare:on", "-cp", jar.toString()));
+            break;
+        case "native": command.add(existing("startup.native", "build/native/verification-metadata-gen", "./gradlew nativeImage").toString()); break;
+        default: throw new IllegalArgumentException("unknown launcher: " + launcher);
+        }
+        command.addAll(Arrays.asList("-Dverification.cache=" + dir, "-Dverification.local=false"));
+        if (!"native".equals(launcher)) {
+            command.add(MAIN);
+        }
+        command.add(report.toString());
+    }
+
+    private static Path existing(String property, String defaultPath, String task) {
+        final Path path = Paths.get(System.getProperty(property, defaultPath)).toAbsolutePath();
+        if (!Files.exists(path)) throw new IllegalStateException(path + " not found; run " + task + " or set -D" + property);
+        return path;
+    }
+
+    /** Caches a made-up checksum for every artifact of the report so that runs never touch the network. */
+    private static void fillCache(String report, Path dir) throws IOException {
+        final RepositoryRegistry registry = RepositoryRegistry.defaults();
+        final PrintStream discard = new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {}
+        });
+        try (ChecksumCache cache = ChecksumCache.open(dir.resolve(Checksum.SHA256.id + ".txt"), Checksum.SHA256.hexChars)) {
+            new FailureReportParser(new StringReader(report), discard).parse((id, repository) -> {
+                final byte[] digest = new byte[Checksum.SHA256.lenBytes];
+                digest[0] = (byte) id.path().hashCode();
+                cache.put(registry.get(repository).get(0).url + id.path(), Digest.of(digest));
+            });
+        }
+    }
+
+    @Benchmark
+    public int run() throws IOException, InterruptedException {
+        final Process process = new ProcessBuilder(command)
+                .redirectOutput(output)
+                .redirectError(new File(output.getPath() + ".err"))
+                .start();
+        final int exit = process.waitFor();
+        if (exit != 0) throw new IllegalStateException(command + " exited with " + exit + "; see " + output + ".err");
+        return exit;
+    }
+}
@@ -15,6 +15,10 @@
 */
 package com.esaulpaugh.headlong.util;
 
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.function.IntUnaryOperator;
 
 /** Hexadecimal codec optimized for small inputs. */
@@ -30,6 +34,10 @@ public final class FastHex {
     // together as a short
     private static final short[] ENCODE_TABLE = new short[1 << Byte.SIZE];
 
+    // ASCII values index directly into the decoding table (size 256) whose elements are nibble values, or -1 for chars
+    // which are not hex digits
+    private static final byte[] DECODE_TABLE = new byte[1 << Byte.SIZE];
+
     static {
         final char[] chars = new char[] { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f' };
         final int leftNibbleMask = 0xF0;
@@ -39,6 +47,11 @@ public final class FastHex {
             char rightChar = chars[i & rightNibbleMask];
             ENCODE_TABLE[i] = (short) ((leftChar << Byte.SIZE) | rightChar);
         }
+        Arrays.fill(DECODE_TABLE, (byte) -1);
+        for (int i = 0; i < chars.length; i++) {
+            DECODE_TABLE[chars[i]] = (byte) i;
+            DECODE_TABLE[Character.toUpperCase(chars[i])] = (byte) i;
+        }
     }
 
     public static String encodeToString(byte... buffer) {
@@ -56,14 +69,76 @@ public final class FastHex {
     }
 
     public static byte[] encodeToBytes(byte[] buffer, int offset, int len) {
-        final int end = offset + len;
         byte[] bytes = new byte[len * CHARS_PER_BYTE];
-        for (int j = 0; offset < end; offset++, j += CHARS_PER_BYTE) {
+        encodeToBytes(buffer, offset, len, bytes, 0);
+        return bytes;
+    }
+
+    /**
+     * Encodes into {@code dest} as ASCII without allocating.
+     *
+     * @return  the number of bytes written
+     */
+    public static int encodeToBytes(byte[] buffer, int offset, int len, byte[] dest, int destOffset) {
+        final int end = offset + len;
+        for (int j = destOffset; offset < end; offset++, j += CHARS_PER_BYTE) {
             int hexPair = ENCODE_TABLE[buffer[offset] & 0xFF];
-            bytes[j] = (byte) (hexPair >>> Byte.SIZE); // left
-            bytes[j+1] = (byte) hexPair; // right
+            dest[j] = (byte) (hexPair >>> Byte.SIZE); // left
+            dest[j+1] = (byte) hexPair; // right
         }
-        return bytes;
+        return len * CHARS_PER_BYTE;
+    }
+
+    /** @return  the number of chars written */
+    public static int encodeToChars(byte[] buffer, int offset, int len, char[] dest, int destOffset) {
+        final int end = offset + len;
+        for (int j = destOffset; offset < end; offset++, j += CHARS_PER_BYTE) {
+            int hexPair = ENCODE_TABLE[buffer[offset] & 0xFF];
+            dest[j] = (char) (hexPair >>> Byte.SIZE);
+            dest[j+1] = (char) (hexPair & 0xFF);
+        }
+        return len * CHARS_PER_BYTE;
+    }
+
+    /** Encodes as ASCII at the buffer's position, advancing it. Independent of the buffer's byte order. */
+    public static ByteBuffer encode(byte[] buffer, int offset, int len, ByteBuffer dest) {
+        final int pos = dest.position();
+        final int n = len * CHARS_PER_BYTE;
+        if (dest.remaining() < n) {
+            throw new BufferOverflowException();
+        }
+        if (dest.hasArray()) {
+            encodeToBytes(buffer, offset, len, dest.array(), dest.arrayOffset() + pos);
+        } else {
+            final int end = offset + len;
+            for (int j = pos; offset < end; offset++, j += CHARS_PER_BYTE) {
+                int hexPair = ENCODE_TABLE[buffer[offset] & 0xFF];
+                dest.put(j, (byte) (hexPair >>> Byte.SIZE));
+                dest.put(j + 1, (byte) hexPair);
+            }
+        }
+        dest.position(pos + n);
+        return dest;
+    }
+
+    public static StringBuilder encode(byte[] buffer, int offset, int len, StringBuilder dest) {
+        dest.ensureCapacity(dest.length() + len * CHARS_PER_BYTE);
+        final int end = offset + len;
+        for ( ; offset < end; offset++) {
+            int hexPair = ENCODE_TABLE[buffer[offset] & 0xFF];
+            dest.append((char) (hexPair >>> Byte.SIZE)).append((char) (hexPair & 0xFF));
+        }
+        return dest;
+    }
+
+    /** Appends char by char, e.g. to a {@code BufferedWriter}, without allocating. */
+    public static <A extends Appendable> A encode(byte[] buffer, int offset, int len, A dest) throws IOException {
+        final int end = offset + len;
+        for ( ; offset < end; offset++) {
+            int hexPair = ENCODE_TABLE[buffer[offset] & 0xFF];
+            dest.append((char) (hexPair >>> Byte.SIZE)).append((char) (hexPair & 0xFF));
+        }
+        return dest;
     }
 
     public static byte[] decode(String hex) {
@@ -71,34 +146,141 @@ public final class FastHex {
     }
 
     public static byte[] decode(String hex, int offset, int len) {
-        return decode(offset, len, hex::charAt);
+        final byte[] dest = new byte[decodedLen(len)];
+        decode(hex, offset, len, dest, 0);
+        return dest;
     }
 
     public static byte[] decode(byte[] hexBytes, int offset, int len) {
-        return decode(offset, len, o -> hexBytes[o]);
+        final byte[] dest = new byte[decodedLen(len)];
+        decode(hexBytes, offset, len, dest, 0);
+        return dest;
+    }
+
+    public static byte[] decode(CharSequence hex, int offset, int len) {
+        final byte[] dest = new byte[decodedLen(len)];
+        decode(hex, offset, len, dest, 0);
+        return dest;
     }
 
-    private static byte[] decode(int offset, int len, IntUnaryOperator extractor) {
+    /** Decodes the buffer's remaining bytes, advancing its position to its limit. */
+    public static byte[] decode(ByteBuffer hexBytes) {
+        final byte[] dest = new byte[decodedLen(hexBytes.remaining())];
+        decode(hexBytes, dest, 0);
+        return dest;
+    }
+
+    /**
+     * Decodes into {@code dest} without allocating. The contents of {@code dest} are unspecified if an exception is
+     * thrown.
+     *
+     * @return  the number of bytes written
+     */
+    public static int decode(String hex, int offset, int len, byte[] dest, int destOffset) {
+        final int destEnd = destOffset + decodedLen(len);
+        int err = 0;
+        for (int j = destOffset, i = offset; j < destEnd; j++, i += CHARS_PER_BYTE) {
+            final int left = nibble(hex.charAt(i));
+            final int right = nibble(hex.charAt(i + 1));
+            err |= left | right;
+            dest[j] = (byte) (left << BITS_PER_CHAR | right);
+        }
+        if (err < 0) throw illegal(hex::charAt, offset, len);
+        return destEnd - destOffset;
+    }
+
+    /** @see #decode(String, int, int, byte[], int) */
+    public static int decode(CharSequence hex, int offset, int len, byte[] dest, int destOffset) {
+        if (hex instanceof String) {
+            return decode((String) hex, offset, len, dest, destOffset);
+        }
+        final int destEnd = destOffset + decodedLen(len);
+        int err = 0;
+        for (int j = destOffset, i = offset; j < destEnd; j++, i += CHARS_PER_BYTE) {
+            final int left = nibble(hex.charAt(i));
+            final int right = nibble(hex.charAt(i + 1));
+            err |= left | right;
+            dest[j] = (byte) (left << BITS_PER_CHAR | right);
+        }
+        if (err < 0) throw illegal(hex::charAt, offset, len);
+        return destEnd - destOffset;
+    }
+
+    /** Decodes four bytes (eight chars) per iteration. @see #decode(String, int, int, byte[], int) */
+    public static int decode(byte[] hexBytes, int offset, int len, byte[] dest, int destOffset) {
+        final int n = decodedLen(len);
+        final int destEnd = destOffset + n;
+        final int blockEnd = destOffset + (n & ~0x3);
+        int err = 0;
+        int i = offset, j = destOffset;
+        for ( ; j < blockEnd; j += 4, i += 8) {
+            final int n0 = DECODE_TABLE[hexBytes[i] & 0xFF], n1 = DECODE_TABLE[hexBytes[i+1] & 0xFF];
+            final int n2 = DECODE_TABLE[hexBytes[i+2] & 0xFF], n3 = DECODE_TABLE[hexBytes[i+3] & 0xFF];
+            final int n4 = DECODE_TABLE[hexBytes[i+4] & 0xFF], n5 = DECODE_TABLE[hexBytes[i+5] & 0xFF];
+            final int n6 = DECODE_TABLE[hexBytes[i+6] & 0xFF], n7 = DECODE_TABLE[hexBytes[i+7] & 0xFF];
+            err |= n0 | n1 | n2 | n3 | n4 | n5 | n6 | n7;
+            dest[j] = (byte) (n0 << BITS_PER_CHAR | n1);
+            dest[j+1] = (byte) (n2 << BITS_PER_CHAR | n3);
+            dest[j+2] = (byte) (n4 << BITS_PER_CHAR | n5);
+            dest[j+3] = (byte) (n6 << BITS_PER_CHAR | n7);
+        }
+        for ( ; j < destEnd; j++, i += CHARS_PER_BYTE) {
+            final int left = DECODE_TABLE[hexBytes[i] & 0xFF];
+            final int right = DECODE_TABLE[hexBytes[i+1] & 0xFF];
+            err |= left | right;
+            dest[j] = (byte) (left << BITS_PER_CHAR | right);
+        }
+        if (err < 0) throw illegal(o -> hexBytes[o], offset, len);
+        return n;
+    }
+
+    /** Decodes the buffer's remaining bytes, advancing its position to its limit. @see #decode(String, int, int, byte[], int) */
+    public static int decode(ByteBuffer hexBytes, byte[] dest, int destOffset) {
+        final int pos = hexBytes.position();
+        final int len = hexBytes.remaining();
+        final int n = decodedLen(len);
+        if (hexBytes.hasArray()) {
+            try {
+                decode(hexBytes.array(), hexBytes.arrayOffset() + pos, len, dest, destOffset);
+            } catch (IllegalArgumentException iae) {
+                throw illegal(hexBytes::get, pos, len); // report the buffer index, not the array index
+            }
+        } else {
+            final int destEnd = destOffset + n;
+            int err = 0;
+            for (int j = destOffset, i = pos; j < destEnd; j++, i += CHARS_PER_BYTE) {
+                final int left = DECODE_TABLE[hexBytes.get(i) & 0xFF];
+                final int right = DECODE_TABLE[hexBytes.get(i + 1) & 0xFF];
+                err |= left | right;
+                dest[j] = (byte) (left << BITS_PER_CHAR | right);
+            }
+            if (err < 0) throw illegal(hexBytes::get, pos, len);
+        }
+        hexBytes.position(pos + len);
+        return n;
+    }
+
+    private static int decodedLen(int len) {
         if ((len & 0x1) != 0) {
             throw new IllegalArgumentException("len must be a multiple of two");
         }
-        byte[] dest = new byte[len / CHARS_PER_BYTE];
-        for (int i = 0; i < dest.length; i++, offset += CHARS_PER_BYTE) {
-            dest[i] = (byte) decodeByte(extractor, offset);
-        }
-        return dest;
+        return len / CHARS_PER_BYTE;
     }
 
-    private static int decodeByte(IntUnaryOperator extractor, int offset) {
-        return decodeNibble(extractor.applyAsInt(offset), offset) << BITS_PER_CHAR | decodeNibble(extractor.applyAsInt(++offset), offset);
+    /** @return the value of the hex char, or a negative number if it is not one */
+    private static int nibble(char c) {
+        return DECODE_TABLE[c & 0xFF] | ((0xFF - c) >> 31); // chars above 0xFF are never hex
     }
 
-    private static int decodeNibble(int c, int offset) {
-        switch (c) {
-        case '0':case '1':case '2':case '3':case '4':case '5':case '6':case '7':case '8':case '9': return c - '0';
-        case 'A':case 'B':case 'C':case 'D':case 'E':case 'F': return  c - ('A' - 0xA);
-        case 'a':case 'b':case 'c':case 'd':case 'e':case 'f': return c - ('a' - 0xa);
-        default: throw new IllegalArgumentException("illegal hex val @ " + offset);
+    /** Slow path. Locates the first illegal char for the error message. */
+    private static IllegalArgumentException illegal(IntUnaryOperator extractor, int offset, int len) {
+        final int end = offset + len;
+        for (int i = offset; i < end; i++) {
+            final int c = extractor.applyAsInt(i);
+            if (c > 0xFF || DECODE_TABLE[c & 0xFF] < 0) {
+                return new IllegalArgumentException("illegal hex val @ " + i);
+            }
         }
+        throw new AssertionError();
     }
 }
@@ -0,0 +1,39 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import java.util.Comparator;
+import java.util.Map;
+
+final class Artifact {
+
+    static final Comparator<Artifact> ORDER = Comparator.comparing(a -> a.name);
+
+    final String name;
+    final Map<Checksum, Digest> hashes;
+    final String origin;
+
+    Artifact(String name, Map<Checksum, Digest> hashes, String origin) {
+        this.name = name;
+        this.hashes = hashes;
+        this.origin = origin;
+    }
+
+    @Override
+    public String toString() {
+        return ComponentWriter.render(this, ComponentWriter.DEFAULT_INDENT_UNIT, 1);
+    }
+}
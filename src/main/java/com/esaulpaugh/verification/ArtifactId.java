@@ -0,0 +1,46 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+/** Identifies one file of a module version, e.g. {@code gson-2.8.9.jar} of {@code com.google.code.gson:gson:2.8.9}. */
+final class ArtifactId {
+
+    final String group;
+    final String name;
+    final String version;
+    final String file;
+
+    ArtifactId(String group, String name, String version, String file) {
+        this.group = group;
+        this.name = name;
+        this.version = version;
+        this.file = file;
+    }
+
+    /** @return the artifact's path relative to the root of a Maven-layout repository */
+    String path() {
+        return group.replace('.', '/') + '/' + name + '/' + version + '/' + file;
+    }
+
+    String componentKey() {
+        return group + ':' + name + ':' + version;
+    }
+
+    @Override
+    public String toString() {
+        return file + " (" + componentKey() + ')';
+    }
+}
@@ -0,0 +1,76 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import com.esaulpaugh.headlong.util.FastHex;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.EnumSet;
+import java.util.Locale;
+
+/** The checksum kinds supported by Gradle dependency verification, declared in the order Gradle writes them. */
+enum Checksum {
+
+    MD5("md5", "MD5", 128),
+    SHA1("sha1", "SHA-1", 160),
+    SHA256("sha256", "SHA-256", 256),
+    SHA512("sha512", "SHA-512", 512);
+
+    /** The XML element name, which is also the extension of the repository's checksum file. */
+    final String id;
+    final String algorithm;
+    final int lenBytes;
+    final int hexChars;
+
+    Checksum(String id, String algorithm, int lenBits) {
+        this.id = id;
+        this.algorithm = algorithm;
+        this.lenBytes = lenBits / Byte.SIZE;
+        this.hexChars = lenBits / FastHex.BITS_PER_CHAR;
+    }
+
+    MessageDigest newMessageDigest() {
+        final MessageDigest md;
+        try {
+            md = MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new Error(nsae);
+        }
+        final int len = md.getDigestLength();
+        if (len * FastHex.CHARS_PER_BYTE != hexChars) throw new Error("bad constants: " + FastHex.CHARS_PER_BYTE + " and " + hexChars);
+        if (len != lenBytes) throw new Error("bad init: " + len + " != " + lenBytes);
+        return md;
+    }
+
+    static Checksum forId(String id) {
+        for (Checksum c : values()) {
+            if (c.id.equals(id)) {
+                return c;
+            }
+        }
+        throw new IllegalArgumentException("unknown checksum: " + id);
+    }
+
+    /** Parses the comma-separated list in {@code -Dverification.checksums}, e.g. {@code sha256,sha512}. Default {@code sha256}. */
+    static Checksum[] fromSystemProperties() {
+        final EnumSet<Checksum> set = EnumSet.noneOf(Checksum.class);
+        for (String id : System.getProperty("verification.checksums", SHA256.id).split(",")) {
+            set.add(forId(id.trim().toLowerCase(Locale.ROOT)));
+        }
+        return set.toArray(new Checksum[0]);
+    }
+}
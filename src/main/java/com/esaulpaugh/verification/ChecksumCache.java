@@ -0,0 +1,150 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import com.esaulpaugh.headlong.util.FastHex;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Maps artifact URL to digest, persisted as an append-only text file of {@code <hex digest> <url>} lines. Released
+ * artifacts are immutable, so entries never expire; {@code -SNAPSHOT} artifacts are never cached. Each entry is written
+ * through to the file as it is added, so a process that is killed, as a daemon normally is, loses none.
+ */
+final class ChecksumCache implements Closeable {
+
+    private static final String SNAPSHOT = "-SNAPSHOT";
+
+    private final ConcurrentHashMap<String, Digest> entries = new ConcurrentHashMap<>(1024);
+    private final Writer appender;
+    private final int hexLen;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private ChecksumCache(Writer appender, int hexLen) {
+        this.appender = appender;
+        this.hexLen = hexLen;
+    }
+
+    static ChecksumCache inMemory(int hexLen) {
+        return new ChecksumCache(null, hexLen);
+    }
+
+    static ChecksumCache open(Path file, int hexLen) throws IOException {
+        final Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        final ChecksumCache cache = new ChecksumCache(
+                Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND),
+                hexLen
+        );
+        try (BufferedReader br = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.length() > hexLen + 1 && line.charAt(hexLen) == ' ') { // ignore lines torn by an interrupted run
+                    try {
+                        cache.entries.put(line.substring(hexLen + 1), Digest.fromHex(line, 0, hexLen));
+                    } catch (IllegalArgumentException ignored) {
+                        /* corrupt */
+                    }
+                }
+            }
+        } catch (NoSuchFileException ignored) {
+            /* first run */
+        }
+        return cache;
+    }
+
+    /**
+     * Opens {@code <checksum id>.txt} in {@code $XDG_CACHE_HOME/verification-metadata-gen} (or {@code ~/.cache/...}),
+     * unless the system property {@code verification.cache} names another directory or is {@code "none"}.
+     */
+    static ChecksumCache fromSystemProperties(Checksum checksum) throws IOException {
+        final String prop = System.getProperty("verification.cache");
+        if ("none".equals(prop)) {
+            return inMemory(checksum.hexChars);
+        }
+        final Path dir;
+        if (prop != null) {
+            dir = Paths.get(prop);
+        } else {
+            final String xdg = System.getenv("XDG_CACHE_HOME");
+            dir = (xdg != null && !xdg.isEmpty() ? Paths.get(xdg) : Paths.get(System.getProperty("user.home"), ".cache"))
+                    .resolve("verification-metadata-gen");
+        }
+        return open(dir.resolve(checksum.id + ".txt"), checksum.hexChars);
+    }
+
+    Digest get(String url) {
+        final Digest hash = entries.get(url);
+        (hash != null ? hits : misses).incrementAndGet();
+        return hash;
+    }
+
+    void put(String url, Digest hash) throws IOException {
+        if (hash.length() * FastHex.CHARS_PER_BYTE != hexLen) throw new IllegalArgumentException("bad hash length: " + hash.length());
+        if (url.contains(SNAPSHOT)) {
+            return;
+        }
+        if (entries.put(url, hash) == null && appender != null) {
+            synchronized (appender) {
+                hash.appendHex(appender);
+                appender.write(' ');
+                appender.write(url);
+                appender.write('\n');
+                appender.flush();
+            }
+        }
+    }
+
+    long hits() {
+        return hits.get();
+    }
+
+    long misses() {
+        return misses.get();
+    }
+
+    @Override
+    public String toString() {
+        final long h = hits.get();
+        final long total = h + misses.get();
+        return "cache: " + h + " hits, " + (total - h) + " misses"
+                + (total == 0 ? "" : String.format(" (%.1f%%)", 100.0 * h / total))
+                + ", " + entries.size() + " entries";
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (appender != null) {
+            synchronized (appender) {
+                appender.close();
+            }
+        }
+    }
+}
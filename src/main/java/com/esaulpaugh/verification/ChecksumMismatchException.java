@@ -0,0 +1,31 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import java.io.IOException;
+
+/**
+ * A downloaded artifact whose bytes do not match the checksum the repository publishes for it. Asking again would
+ * return the same bytes, so {@link FetchPolicy} neither retries it nor holds it against the host.
+ */
+final class ChecksumMismatchException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    ChecksumMismatchException(Checksum checksum, String url, Digest expected, Digest actual) {
+        super(checksum.id + " mismatch for " + url + ": expected " + expected + ", got " + actual);
+    }
+}
@@ -0,0 +1,47 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import java.util.Comparator;
+import java.util.List;
+
+final class Component {
+
+    static final Comparator<Component> ORDER = Comparator.comparing((Component c) -> c.group)
+            .thenComparing(c -> c.name)
+            .thenComparing(c -> c.version);
+
+    final String group;
+    final String name;
+    final String version;
+    final List<Artifact> artifacts;
+
+    Component(String group, String name, String version, List<Artifact> artifacts) {
+        this.group = group;
+        this.name = name;
+        this.version = version;
+        this.artifacts = artifacts;
+    }
+
+    String key() {
+        return group + ':' + name + ':' + version;
+    }
+
+    @Override
+    public String toString() {
+        return ComponentWriter.render(this, ComponentWriter.DEFAULT_INDENT_UNIT, 0);
+    }
+}
@@ -0,0 +1,145 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes {@code <component>} elements, escaping attribute values as it goes. Calls to {@link #write(Component)} are
+ * serialized, so workers may emit components directly as they complete.
+ */
+final class ComponentWriter implements Flushable {
+
+    static final String DEFAULT_INDENT_UNIT = "    ";
+
+    private final Writer out;
+    private final String componentIndent;
+    private final String artifactIndent;
+    private final String hashIndent;
+
+    /**
+     * @param out   the destination, which should be buffered
+     * @param unit  one level of indentation
+     * @param depth the indentation level of {@code <component>} tags
+     */
+    ComponentWriter(Writer out, String unit, int depth) {
+        this.out = out;
+        this.componentIndent = repeat(unit, depth);
+        this.artifactIndent = componentIndent + unit;
+        this.hashIndent = artifactIndent + unit;
+    }
+
+    static String render(Component c, String unit, int depth) {
+        final StringWriter sw = new StringWriter(256);
+        try {
+            new ComponentWriter(sw, unit, depth).write(c);
+        } catch (IOException ioe) {
+            throw new Error(ioe); // StringWriter doesn't throw
+        }
+        return sw.toString();
+    }
+
+    static String render(Artifact a, String unit, int depth) {
+        final StringWriter sw = new StringWriter(128);
+        try {
+            new ComponentWriter(sw, unit, depth - 1).write(a);
+        } catch (IOException ioe) {
+            throw new Error(ioe);
+        }
+        return sw.toString();
+    }
+
+    /** Writes the component with its artifacts in name order. */
+    synchronized void write(Component c) throws IOException {
+        final List<Artifact> artifacts = new ArrayList<>(c.artifacts);
+        artifacts.sort(Artifact.ORDER);
+        out.write(componentIndent);
+        out.write("<component");
+        attribute("group", c.group);
+        attribute("name", c.name);
+        attribute("version", c.version);
+        out.write(">\n");
+        for (Artifact a : artifacts) {
+            write(a);
+        }
+        out.write(componentIndent);
+        out.write("</component>\n");
+    }
+
+    private void write(Artifact a) throws IOException {
+        out.write(artifactIndent);
+        out.write("<artifact");
+        attribute("name", a.name);
+        out.write(">\n");
+        for (Map.Entry<Checksum, Digest> e : a.hashes.entrySet()) {
+            out.write(hashIndent);
+            out.write('<');
+            out.write(e.getKey().id);
+            out.write(" value=\"");
+            e.getValue().appendHex(out); // hex needs no escaping
+            out.write('"');
+            attribute("origin", a.origin);
+            out.write("/>\n");
+        }
+        out.write(artifactIndent);
+        out.write("</artifact>\n");
+    }
+
+    private void attribute(String name, String value) throws IOException {
+        out.write(' ');
+        out.write(name);
+        out.write("=\"");
+        escapeAttribute(value, out);
+        out.write('"');
+    }
+
+    static void escapeAttribute(String value, Writer out) throws IOException {
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            final String entity;
+            switch (value.charAt(i)) {
+            case '&': entity = "&amp;"; break;
+            case '<': entity = "&lt;"; break;
+            case '>': entity = "&gt;"; break;
+            case '"': entity = "&quot;"; break;
+            default: continue;
+            }
+            out.write(value, start, i - start);
+            out.write(entity);
+            start = i + 1;
+        }
+        out.write(value, start, value.length() - start);
+    }
+
+    private static String repeat(String unit, int n) {
+        final StringBuilder sb = new StringBuilder(unit.length() * n);
+        for (int i = 0; i < n; i++) {
+            sb.append(unit);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        out.flush();
+    }
+}
@@ -0,0 +1,277 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Resolves artifacts on a bounded pool of workers, each with its own {@link MessageDigest}s, while capping the number
+ * of requests in flight to any one repository host. The pool and the cap may be shared by several resolvers. */
+final class ConcurrentResolver implements AutoCloseable {
+
+    interface ComponentSink {
+        void complete(Component component) throws IOException;
+    }
+
+    interface Outcome {
+        /** Called once per artifact with either the artifact or the reason it could not be resolved. */
+        void resolved(Artifact artifact, IOException failure) throws IOException;
+    }
+
+    static final int DEFAULT_PARALLELISM = 16;
+    static final int DEFAULT_HOST_LIMIT = 8;
+
+    private final HashResolver hashes;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final HostLimiter hosts;
+    private final List<Future<?>> pending = new ArrayList<>();
+    private final Set<String> submitted = ConcurrentHashMap.newKeySet();
+    private final Map<String, int[]> outstanding = new HashMap<>(); // component key -> unresolved artifacts
+    private ComponentSink sink = null;
+    private Journal journal = null;
+    private boolean sealed = false;
+
+    ConcurrentResolver(HashResolver hashes, int parallelism, int hostLimit) {
+        this(hashes, newExecutor(parallelism), true, new HostLimiter(hostLimit));
+    }
+
+    /**
+     * Runs on {@code executor}, from {@link #newExecutor}, which {@link #close} leaves running, within the per-host caps
+     * of {@code hosts}, which count the tasks of every resolver sharing it.
+     */
+    ConcurrentResolver(HashResolver hashes, ExecutorService executor, HostLimiter hosts) {
+        this(hashes, executor, false, hosts);
+    }
+
+    private ConcurrentResolver(HashResolver hashes, ExecutorService executor, boolean ownsExecutor, HostLimiter hosts) {
+        this.hashes = hashes;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.hosts = hosts;
+    }
+
+    static ExecutorService newExecutor(int parallelism) {
+        if (parallelism <= 0) throw new IllegalArgumentException("parallelism must be positive");
+        final AtomicInteger threadNum = new AtomicInteger();
+        return Executors.newFixedThreadPool(parallelism, r -> {
+            final Thread t = new Thread(r, "resolver-" + threadNum.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Configured via the system properties {@code verification.parallelism} and {@code verification.hostLimit}. */
+    static ConcurrentResolver fromSystemProperties(HashResolver hashes) {
+        return new ConcurrentResolver(
+                hashes,
+                Integer.getInteger("verification.parallelism", DEFAULT_PARALLELISM),
+                Integer.getInteger("verification.hostLimit", DEFAULT_HOST_LIMIT)
+        );
+    }
+
+    /** Passes each component to the sink once all of its artifacts have resolved and {@link #seal} has been called. */
+    void emitTo(ComponentSink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * Takes artifacts recovered by the journal instead of resolving them again, and records each newly resolved
+     * artifact in it.
+     */
+    void journalTo(Journal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * May be called from several threads. The task counts against the host of the first of {@code repos}; probes of
+     * the others are not limited.
+     */
+    void submit(final ArtifactId id, final List<Repository> repos, final Map<String, Component> components) {
+        submit(id, repos, components, false);
+    }
+
+    /**
+     * @param optional  whether an artifact no repository has is skipped with a warning rather than failing
+     *                  {@link #awaitAll}
+     */
+    synchronized void submit(final ArtifactId id, final List<Repository> repos, final Map<String, Component> components,
+                             final boolean optional) {
+        if (!submitted.add(id.componentKey() + ':' + id.file)) {
+            return; // reports repeat an artifact once per configuration that failed on it
+        }
+        final String componentKey = id.componentKey();
+        final Artifact recovered = journal != null ? journal.recovered(id) : null;
+        if (recovered != null) {
+            ParserGenerator.addArtifact(id, recovered, components);
+            if (sink != null) {
+                synchronized (outstanding) {
+                    outstanding.computeIfAbsent(componentKey, k -> new int[1]); // emitted by seal if nothing else is outstanding
+                }
+            }
+            return;
+        }
+        if (sink != null) {
+            synchronized (outstanding) {
+                outstanding.computeIfAbsent(componentKey, k -> new int[1])[0]++;
+            }
+        }
+        execute(repos, () -> {
+            final Artifact artifact;
+            try {
+                artifact = hashes.resolve(repos, id, hashes.threadDigests());
+            } catch (FileNotFoundException fnfe) {
+                if (!optional) throw fnfe;
+                System.err.println("skipping " + id + ": not found");
+                if (sink != null) {
+                    resolved(componentKey, components);
+                }
+                return null;
+            }
+            if (journal != null) {
+                journal.append(id, artifact);
+            }
+            ParserGenerator.addArtifact(id, artifact, components);
+            if (sink != null) {
+                resolved(componentKey, components);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Resolves the artifact without adding it to any component and passes the result to {@code outcome}. A failure to
+     * resolve is handed to the outcome rather than failing {@link #awaitAll}; only an exception thrown by the outcome
+     * itself does that.
+     */
+    synchronized void submit(final ArtifactId id, final List<Repository> repos, final Outcome outcome) {
+        if (!submitted.add(id.componentKey() + ':' + id.file)) {
+            return;
+        }
+        execute(repos, () -> {
+            Artifact artifact = null;
+            IOException failure = null;
+            try {
+                artifact = hashes.resolve(repos, id, hashes.threadDigests());
+            } catch (IOException ioe) {
+                failure = ioe;
+            }
+            outcome.resolved(artifact, failure);
+            return null;
+        });
+    }
+
+    private void execute(List<Repository> repos, Callable<Void> work) {
+        final Work task = new Work(work);
+        pending.add(task);
+        hosts.execute(Fetcher.host(repos.get(0).url), executor, task, task::reject);
+    }
+
+    /** A task that fails {@link #awaitAll} if the executor rejects it, e.g. once closed, rather than never completing. */
+    private static final class Work extends FutureTask<Void> {
+
+        Work(Callable<Void> work) {
+            super(work);
+        }
+
+        void reject(RejectedExecutionException ree) {
+            setException(ree);
+        }
+    }
+
+    private void resolved(String componentKey, Map<String, Component> components) throws IOException {
+        final boolean complete;
+        synchronized (outstanding) {
+            complete = --outstanding.get(componentKey)[0] == 0 && sealed;
+            if (complete) outstanding.remove(componentKey);
+        }
+        final Component component = components.get(componentKey);
+        if (complete && component != null) { // absent if every artifact of it was optional and skipped
+            sink.complete(component);
+        }
+    }
+
+    /**
+     * Declares that no more artifacts will be submitted, so that a component is known to be complete once its
+     * outstanding artifacts resolve. Emits any components that are already complete.
+     */
+    void seal(Map<String, Component> components) throws IOException {
+        if (sink == null) {
+            return;
+        }
+        final List<String> complete = new ArrayList<>();
+        synchronized (outstanding) {
+            sealed = true;
+            final Iterator<Map.Entry<String, int[]>> iter = outstanding.entrySet().iterator();
+            while (iter.hasNext()) {
+                final Map.Entry<String, int[]> e = iter.next();
+                if (e.getValue()[0] == 0) {
+                    complete.add(e.getKey());
+                    iter.remove();
+                }
+            }
+        }
+        for (String key : complete) {
+            final Component component = components.get(key);
+            if (component != null) {
+                sink.complete(component);
+            }
+        }
+    }
+
+    /** Blocks until every submitted artifact is resolved. Rethrows the first failure encountered. */
+    void awaitAll() throws IOException {
+        try {
+            for (Future<?> f : pending) {
+                f.get();
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", ie);
+        } catch (ExecutionException ee) {
+            final Throwable cause = ee.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
+        } finally {
+            pending.clear();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (ownsExecutor) {
+            executor.shutdownNow();
+        }
+    }
+}
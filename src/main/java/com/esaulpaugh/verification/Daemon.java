@@ -0,0 +1,331 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import com.esaulpaugh.headlong.util.FastHex;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves failure reports from one long-lived process, so that successive runs share a warmed-up JIT, the fetcher's
+ * pooled connections, the checksum caches and the workers' digests instead of each paying for them again. Listens on
+ * a TCP port of the loopback address. Any local user can connect to that, so the daemon writes a random token to a
+ * file only its own user can read (see {@link #tokenFile}), and a client must send the token as its first line. It
+ * then writes a report and shuts down its output; the daemon answers with a status line, {@code OK} or
+ * {@code ERROR <message>}, followed on success by the components in group/name/version order. Requests are served
+ * concurrently on a shared pool of resolver workers, and the per-host cap on requests in flight applies to all of them
+ * together. {@link Metrics} are printed, exported and reset whenever no request is in flight, so each summary covers
+ * one request, or several that overlapped.
+ */
+final class Daemon implements Closeable {
+
+    static final int READ_TIMEOUT_MILLIS = 60_000;
+
+    private static final int TOKEN_BYTES = 32;
+
+    private final RepositoryRegistry registry;
+    private final Fetcher fetcher;
+    private final HashResolver hashes;
+    private final ExecutorService workers;
+    private final HostLimiter hosts;
+    private final ServerSocket server;
+    private final Path tokenFile;
+    private final String token;
+    private final Object requestLock = new Object();
+    private int activeRequests = 0; // guarded by requestLock
+    private final ExecutorService connections = Executors.newCachedThreadPool(r -> {
+        final Thread t = new Thread(r, "connection");
+        t.setDaemon(true);
+        return t;
+    });
+
+    Daemon(int port, Path tokenFile, RepositoryRegistry registry, Fetcher fetcher, HashResolver hashes, int parallelism, int hostLimit) throws IOException {
+        this.server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        final byte[] secret = new byte[TOKEN_BYTES];
+        new SecureRandom().nextBytes(secret);
+        this.token = FastHex.encodeToString(secret);
+        try {
+            writeOwnerOnly(tokenFile, token);
+        } catch (IOException | RuntimeException e) {
+            server.close();
+            throw e;
+        }
+        this.tokenFile = tokenFile;
+        this.registry = registry;
+        this.fetcher = fetcher;
+        this.hashes = hashes;
+        this.workers = ConcurrentResolver.newExecutor(parallelism);
+        this.hosts = new HostLimiter(hostLimit);
+    }
+
+    /** Configured like a single run; see {@link ConcurrentResolver#fromSystemProperties}. */
+    static Daemon fromSystemProperties(int port, RepositoryRegistry registry) throws IOException {
+        final Fetcher fetcher = FetchPolicy.fromSystemProperties(Fetcher.create());
+        try {
+            final HashResolver hashes = HashResolver.fromSystemProperties(fetcher);
+            hashes.newMessageDigests(); // fail fast, and load the providers before the first request
+            return new Daemon(
+                    port,
+                    tokenFile(port),
+                    registry,
+                    fetcher,
+                    hashes,
+                    Integer.getInteger("verification.parallelism", ConcurrentResolver.DEFAULT_PARALLELISM),
+                    Integer.getInteger("verification.hostLimit", ConcurrentResolver.DEFAULT_HOST_LIMIT)
+            );
+        } catch (IOException | RuntimeException e) {
+            fetcher.close();
+            throw e;
+        }
+    }
+
+    int port() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * @return  {@code -Dverification.daemonToken} if set, else {@code daemon-<port>.token} in
+     *          {@code $XDG_RUNTIME_DIR/verification-metadata-gen}, or without that variable, in
+     *          {@code ~/.cache/verification-metadata-gen}
+     */
+    static Path tokenFile(int port) {
+        final String prop = System.getProperty("verification.daemonToken");
+        if (prop != null) {
+            return Paths.get(prop);
+        }
+        final String runtimeDir = System.getenv("XDG_RUNTIME_DIR");
+        final Path dir = runtimeDir != null && !runtimeDir.isEmpty()
+                ? Paths.get(runtimeDir)
+                : Paths.get(System.getProperty("user.home"), ".cache");
+        return dir.resolve("verification-metadata-gen").resolve("daemon-" + port + ".token");
+    }
+
+    /**
+     * Replaces the file atomically with one created readable and writable by its owner only, where POSIX permissions
+     * apply.
+     */
+    private static void writeOwnerOnly(Path file, String contents) throws IOException {
+        final Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp;
+        try {
+            tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp",
+                    PosixFilePermissions.asFileAttribute(EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE)));
+        } catch (UnsupportedOperationException notPosix) {
+            tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp"); // e.g. on Windows, private to the user by the profile's ACL
+        }
+        try {
+            Files.write(tmp, contents.getBytes(StandardCharsets.US_ASCII));
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /** Accepts connections until closed. */
+    void serve() throws IOException {
+        System.err.println("listening on " + server.getLocalSocketAddress());
+        while (true) {
+            final Socket socket;
+            try {
+                socket = server.accept();
+            } catch (SocketException se) {
+                if (server.isClosed()) {
+                    return;
+                }
+                throw se;
+            }
+            connections.execute(() -> handle(socket));
+        }
+    }
+
+    private void handle(Socket socket) {
+        final long start = System.nanoTime();
+        try (Socket s = socket) {
+            s.setSoTimeout(READ_TIMEOUT_MILLIS);
+            final Writer out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8), 1 << 16);
+            final Reader in = new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8);
+            if (!authenticated(in)) {
+                System.err.println("rejected a connection without the token");
+                out.write("ERROR unauthorized\n");
+                out.flush();
+                return;
+            }
+            beginRequest();
+            try {
+                serve(in, out, start);
+            } finally {
+                endRequest();
+            }
+        } catch (IOException ioe) {
+            System.err.println("connection failed: " + ioe);
+        }
+    }
+
+    /** Reads the first line and compares it with the token in time independent of where they differ. */
+    private boolean authenticated(Reader in) throws IOException {
+        final char[] presented = new char[token.length()];
+        int n = 0;
+        for (int c; (c = in.read()) != '\n'; ) {
+            if (c == -1 || n == presented.length) {
+                return false;
+            }
+            presented[n++] = (char) c;
+        }
+        return n == presented.length && MessageDigest.isEqual(
+                new String(presented).getBytes(StandardCharsets.UTF_8),
+                token.getBytes(StandardCharsets.US_ASCII)
+        );
+    }
+
+    private void beginRequest() {
+        synchronized (requestLock) {
+            activeRequests++;
+        }
+    }
+
+    /** Once no request is in flight, reports the metrics recorded since the last report and starts afresh. */
+    private void endRequest() throws IOException {
+        synchronized (requestLock) {
+            if (--activeRequests == 0) {
+                System.err.println(Metrics.summary());
+                Metrics.exportFromSystemProperties();
+                Metrics.reset();
+            }
+        }
+    }
+
+    private void serve(Reader in, Writer out, long start) throws IOException {
+        final List<Component> components;
+        try {
+            components = resolve(in);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("request failed: " + e);
+            out.write("ERROR " + e.toString().replace('\n', ' ') + '\n');
+            out.flush();
+            return;
+        }
+        out.write("OK\n");
+        final ComponentWriter xml = new ComponentWriter(out, ComponentWriter.DEFAULT_INDENT_UNIT, 0);
+        for (Component c : components) {
+            xml.write(c);
+        }
+        xml.flush();
+        Metrics.count("daemon.requests");
+        System.err.println("served " + components.size() + " components in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+    }
+
+    /** @return the components of the report's artifacts in group/name/version order */
+    List<Component> resolve(Reader report) throws IOException {
+        final ConcurrentHashMap<String, Component> components = new ConcurrentHashMap<>(128);
+        try (ConcurrentResolver resolver = new ConcurrentResolver(hashes, workers, hosts)) {
+            new FailureReportParser(report, System.err).parse((id, repository) -> {
+                final List<Repository> repos = registry.get(repository);
+                if (repos != null) {
+                    resolver.submit(id, repos, components);
+                } else {
+                    System.err.println("skipping " + id + " from repository " + repository);
+                }
+            });
+            resolver.awaitAll();
+        }
+        final List<Component> list = new ArrayList<>(components.values());
+        list.sort(Component.ORDER);
+        return list;
+    }
+
+    /**
+     * Sends the report to the daemon listening on the port, with the token read from {@code tokenFile}, and copies the
+     * components it answers with to {@code out}.
+     *
+     * @return  whether the daemon succeeded; if not, its message is printed to standard error
+     */
+    static boolean request(int port, Path tokenFile, Reader report, Writer out) throws IOException {
+        final String token;
+        try {
+            token = new String(Files.readAllBytes(tokenFile), StandardCharsets.US_ASCII).trim();
+        } catch (NoSuchFileException nsfe) {
+            throw new IOException("no daemon token at " + tokenFile + "; is a daemon on port " + port + " running as this user?", nsfe);
+        }
+        try (Socket s = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            final Writer w = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8), 1 << 16);
+            w.write(token);
+            w.write('\n');
+            final char[] buffer = new char[1 << 13];
+            for (int n; (n = report.read(buffer)) != -1; ) {
+                w.write(buffer, 0, n);
+            }
+            w.flush();
+            s.shutdownOutput();
+            final BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8), 1 << 16);
+            final String status = in.readLine();
+            if (!"OK".equals(status)) {
+                System.err.println(status != null ? status : "ERROR no response");
+                return false;
+            }
+            for (int n; (n = in.read(buffer)) != -1; ) {
+                out.write(buffer, 0, n);
+            }
+            out.flush();
+            return true;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            server.close();
+            connections.shutdownNow();
+            workers.shutdownNow();
+            Files.deleteIfExists(tokenFile);
+        } finally {
+            try {
+                hashes.close();
+            } finally {
+                fetcher.close();
+            }
+        }
+    }
+}
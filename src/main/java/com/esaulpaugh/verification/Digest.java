@@ -0,0 +1,83 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import com.esaulpaugh.headlong.util.FastHex;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * An immutable checksum value, held as raw bytes rather than as a hex {@code String} (half the size for SHA-256) and
+ * converted to hex only for output. Digests are uniformly distributed, so the hash code is simply the leading bytes.
+ */
+final class Digest {
+
+    private final byte[] bytes;
+    private final int hashCode;
+
+    private Digest(byte[] bytes) {
+        this.bytes = bytes;
+        int h = 0;
+        for (int i = 0; i < bytes.length && i < Integer.BYTES; i++) {
+            h = h << Byte.SIZE | (bytes[i] & 0xFF);
+        }
+        this.hashCode = h;
+    }
+
+    /** Takes ownership of {@code bytes}, e.g. the result of {@link java.security.MessageDigest#digest()}. */
+    static Digest of(byte[] bytes) {
+        return new Digest(bytes);
+    }
+
+    /** @throws IllegalArgumentException if the chars are not hex */
+    static Digest fromHex(String hex, int offset, int len) {
+        return new Digest(FastHex.decode(hex, offset, len));
+    }
+
+    /** @throws IllegalArgumentException if the bytes are not ASCII hex */
+    static Digest fromHex(byte[] hexBytes, int offset, int len) {
+        return new Digest(FastHex.decode(hexBytes, offset, len));
+    }
+
+    int length() {
+        return bytes.length;
+    }
+
+    String toHex() {
+        return FastHex.encodeToString(bytes);
+    }
+
+    /** Appends the hex encoding without creating an intermediate {@code String}. */
+    <A extends Appendable> A appendHex(A dest) throws IOException {
+        return FastHex.encode(bytes, 0, bytes.length, dest);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o == this || (o instanceof Digest && Arrays.equals(((Digest) o).bytes, bytes));
+    }
+
+    @Override
+    public String toString() {
+        return toHex();
+    }
+}
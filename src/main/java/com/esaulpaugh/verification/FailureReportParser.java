@@ -0,0 +1,154 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Single-pass tokenizer for the artifact lists Gradle prints when dependency verification fails, e.g.
+ * <pre>    - gson-2.8.9.jar (com.google.code.gson:gson:2.8.9) from repository MavenRepo</pre>
+ * or, when only one artifact failed,
+ * <pre>One artifact failed verification: gson-2.8.9.jar (com.google.code.gson:gson:2.8.9) from repository MavenRepo</pre>
+ * Any amount of indentation is accepted. Lines are scanned in place in a reusable buffer; only the extracted fields are
+ * allocated. Other lines, such as the report's headers and footers, are silently ignored; entries that fail to parse
+ * are reported to the diagnostics stream with their line and column and skipped.
+ */
+final class FailureReportParser {
+
+    interface Handler {
+        void artifact(ArtifactId id, String repository) throws IOException;
+    }
+
+    private static final String FROM_REPOSITORY = " from repository ";
+    private static final String ONE_ARTIFACT = "One artifact failed verification: ";
+
+    private final Reader reader;
+    private final PrintStream diagnostics;
+    private char[] buf = new char[8192];
+    private int lineNumber;
+    private int malformed;
+
+    FailureReportParser(Reader reader, PrintStream diagnostics) {
+        this.reader = reader;
+        this.diagnostics = diagnostics;
+    }
+
+    /** @return the number of artifacts passed to the handler */
+    int parse(Handler handler) throws IOException {
+        int count = 0;
+        int start = 0; // start of the current line
+        int pos = 0; // scan position
+        int end = 0; // end of buffered input
+        for (;;) {
+            for ( ; pos < end; pos++) {
+                if (buf[pos] == '\n') {
+                    if (parseLine(start, pos, handler)) count++;
+                    start = pos + 1;
+                }
+            }
+            if (start > 0) {
+                System.arraycopy(buf, start, buf, 0, end - start);
+                end -= start;
+                pos = end;
+                start = 0;
+            }
+            if (end == buf.length) {
+                buf = Arrays.copyOf(buf, buf.length * 2);
+            }
+            final int read = reader.read(buf, end, buf.length - end);
+            if (read == -1) {
+                break;
+            }
+            end += read;
+        }
+        if (start < end && parseLine(start, end, handler)) count++;
+        return count;
+    }
+
+    int malformed() {
+        return malformed;
+    }
+
+    private boolean parseLine(final int lineStart, int lineEnd, Handler handler) throws IOException {
+        lineNumber++;
+        while (lineEnd > lineStart && isWhitespace(buf[lineEnd - 1])) lineEnd--; // incl. '\r'
+        int p = lineStart;
+        while (p < lineEnd && isWhitespace(buf[p])) p++;
+        if (p == lineEnd) {
+            return false;
+        }
+        final int fileStart;
+        if (p + 1 < lineEnd && buf[p] == '-' && buf[p + 1] == ' ') {
+            fileStart = p + 2;
+        } else if (regionMatches(p, lineEnd, ONE_ARTIFACT)) {
+            fileStart = p + ONE_ARTIFACT.length();
+        } else {
+            return false;
+        }
+        final int fileEnd = indexOf(' ', fileStart, lineEnd);
+        if (fileEnd <= fileStart || fileEnd + 1 >= lineEnd || buf[fileEnd + 1] != '(') return malformed(lineStart, Math.max(fileEnd, fileStart), lineEnd, "\" (\"");
+        final int groupStart = fileEnd + 2;
+        final int groupEnd = indexOf(':', groupStart, lineEnd);
+        if (groupEnd <= groupStart) return malformed(lineStart, groupStart, lineEnd, "group");
+        final int nameStart = groupEnd + 1;
+        final int nameEnd = indexOf(':', nameStart, lineEnd);
+        if (nameEnd <= nameStart) return malformed(lineStart, nameStart, lineEnd, "name");
+        final int versionStart = nameEnd + 1;
+        final int versionEnd = indexOf(')', versionStart, lineEnd);
+        if (versionEnd <= versionStart) return malformed(lineStart, versionStart, lineEnd, "version");
+        final int repoStart = versionEnd + 1 + FROM_REPOSITORY.length();
+        if (repoStart >= lineEnd || !regionMatches(versionEnd + 1, lineEnd, FROM_REPOSITORY)) return malformed(lineStart, versionEnd + 1, lineEnd, "\"" + FROM_REPOSITORY + "<repository>\"");
+        handler.artifact(
+                new ArtifactId(
+                        new String(buf, groupStart, groupEnd - groupStart),
+                        new String(buf, nameStart, nameEnd - nameStart),
+                        new String(buf, versionStart, versionEnd - versionStart),
+                        new String(buf, fileStart, fileEnd - fileStart)
+                ),
+                new String(buf, repoStart, lineEnd - repoStart)
+        );
+        return true;
+    }
+
+    private boolean malformed(int lineStart, int errPos, int lineEnd, String expected) {
+        malformed++;
+        diagnostics.println("malformed entry at line " + lineNumber + ", col " + (errPos - lineStart + 1)
+                + ": expected " + expected + ": " + new String(buf, lineStart, lineEnd - lineStart));
+        return false;
+    }
+
+    private int indexOf(char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf[i] == c) return i;
+        }
+        return -1;
+    }
+
+    private boolean regionMatches(int offset, int to, String s) {
+        if (offset + s.length() > to) return false;
+        for (int i = 0; i < s.length(); i++) {
+            if (buf[offset + i] != s.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\r';
+    }
+}
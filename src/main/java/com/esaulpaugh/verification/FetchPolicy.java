@@ -0,0 +1,222 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * Wraps a {@link Fetcher} with per-host adaptive timeouts, bounded retries with jittered exponential backoff, and a
+ * circuit breaker that fails fast once a host has failed repeatedly.
+ * <p>
+ * The timeout a caller passes is treated as a floor: once enough responses from a host have been observed, the
+ * timeout becomes a multiple of that host's 95th percentile time to first byte, up to a ceiling. Each retry doubles
+ * it. After {@code breakerThreshold} consecutive requests fail even when retried, a host's breaker opens and requests
+ * to it fail immediately for {@code breakerCooldownMillis}, after which a single trial request decides whether it
+ * closes again. Failed attempts that are retried do not count, so a burst of concurrent timeouts (e.g. while
+ * connections are first established) cannot open the breaker on its own.
+ */
+final class FetchPolicy implements Fetcher {
+
+    static final int DEFAULT_RETRIES = 3;
+    static final int DEFAULT_MAX_TIMEOUT_MILLIS = 10_000;
+    static final int DEFAULT_BREAKER_THRESHOLD = 5;
+    static final int DEFAULT_BREAKER_COOLDOWN_MILLIS = 30_000;
+
+    private static final int BACKOFF_BASE_MILLIS = 100;
+    private static final int BACKOFF_MAX_MILLIS = 2_000;
+    private static final int SAMPLES = 64;
+    private static final int MIN_SAMPLES = 8;
+    private static final int PERCENTILE_MULTIPLIER = 3;
+
+    private final Fetcher delegate;
+    private final int retries;
+    private final int maxTimeoutMillis;
+    private final int breakerThreshold;
+    private final long breakerCooldownNanos;
+    private final ConcurrentHashMap<String, Host> hosts = new ConcurrentHashMap<>(8);
+    private volatile Consumer<String> log = System.err::println;
+
+    FetchPolicy(Fetcher delegate, int retries, int maxTimeoutMillis, int breakerThreshold, int breakerCooldownMillis) {
+        if (retries < 0) throw new IllegalArgumentException("retries must be non-negative");
+        if (maxTimeoutMillis <= 0) throw new IllegalArgumentException("maxTimeoutMillis must be positive");
+        if (breakerThreshold <= 0) throw new IllegalArgumentException("breakerThreshold must be positive");
+        if (breakerCooldownMillis < 0) throw new IllegalArgumentException("breakerCooldownMillis must be non-negative");
+        this.delegate = delegate;
+        this.retries = retries;
+        this.maxTimeoutMillis = maxTimeoutMillis;
+        this.breakerThreshold = breakerThreshold;
+        this.breakerCooldownNanos = breakerCooldownMillis * 1_000_000L;
+    }
+
+    /**
+     * Configured via the system properties {@code verification.retries}, {@code verification.maxTimeout},
+     * {@code verification.breakerThreshold} and {@code verification.breakerCooldown} (the latter two in milliseconds).
+     */
+    static FetchPolicy fromSystemProperties(Fetcher delegate) {
+        return new FetchPolicy(
+                delegate,
+                Integer.getInteger("verification.retries", DEFAULT_RETRIES),
+                Integer.getInteger("verification.maxTimeout", DEFAULT_MAX_TIMEOUT_MILLIS),
+                Integer.getInteger("verification.breakerThreshold", DEFAULT_BREAKER_THRESHOLD),
+                Integer.getInteger("verification.breakerCooldown", DEFAULT_BREAKER_COOLDOWN_MILLIS)
+        );
+    }
+
+    /** Receives a line per retry; standard error by default. */
+    void logTo(Consumer<String> log) {
+        this.log = log;
+    }
+
+    @Override
+    public InputStream open(String url, int readTimeoutMillis) throws IOException {
+        return call(url, readTimeoutMillis, body -> body);
+    }
+
+    @Override
+    public <T> T fetch(String url, int readTimeoutMillis, BodyReader<T> reader) throws IOException {
+        return call(url, readTimeoutMillis, body -> {
+            try (InputStream b = body) {
+                return reader.read(b);
+            }
+        });
+    }
+
+    private <T> T call(final String url, final int floorMillis, final BodyReader<T> reader) throws IOException {
+        final Host host = hosts.computeIfAbsent(Fetcher.host(url), Host::new);
+        for (int attempt = 0; ; attempt++) {
+            host.admit();
+            final int timeout = (int) Math.min((long) host.timeoutMillis(floorMillis) << attempt, maxTimeoutMillis);
+            final long start = System.nanoTime();
+            final T result;
+            final long latency;
+            try {
+                final InputStream body = delegate.open(url, timeout);
+                latency = System.nanoTime() - start;
+                result = reader.read(body);
+            } catch (IOException ioe) {
+                final boolean retryable = ioe instanceof HttpStatusException
+                        ? ((HttpStatusException) ioe).isTransient()
+                        : !(ioe instanceof FileNotFoundException || ioe instanceof ChecksumMismatchException); // a reader's verdict on the resource
+                final boolean exhausted = attempt >= retries || Thread.currentThread().isInterrupted();
+                if (retryable) {
+                    Metrics.count("fetch.failures");
+                    host.failure(exhausted);
+                } else {
+                    host.success(System.nanoTime() - start); // the host answered; the resource is the problem
+                }
+                if (!retryable || exhausted) {
+                    throw ioe;
+                }
+                final int backoff = ThreadLocalRandom.current().nextInt(Math.min(BACKOFF_BASE_MILLIS << attempt, BACKOFF_MAX_MILLIS) + 1);
+                Metrics.count("fetch.retries");
+                log.accept("retrying " + url + " in " + backoff + " ms after " + ioe);
+                sleep(backoff);
+                continue;
+            } catch (RuntimeException | Error t) {
+                host.abandon();
+                throw t;
+            }
+            host.success(latency);
+            return result;
+        }
+    }
+
+    private static void sleep(int millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted during backoff");
+        }
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    /** Latency samples and breaker state for one repository host. */
+    private final class Host {
+
+        private final String name;
+        private final int[] samplesMillis = new int[SAMPLES];
+        private int sampleCount = 0;
+        private int nextSample = 0;
+        private int consecutiveFailures = 0;
+        private long openUntil = 0L;
+        private boolean trialInFlight = false;
+
+        Host(String name) {
+            this.name = name;
+        }
+
+        /** @throws IOException if the breaker is open, or half-open with a trial request already in flight */
+        synchronized void admit() throws IOException {
+            if (consecutiveFailures < breakerThreshold) {
+                return;
+            }
+            if (System.nanoTime() - openUntil < 0L) {
+                Metrics.count("fetch.rejected");
+                throw new IOException("circuit open for " + name + " after " + consecutiveFailures + " consecutive failures");
+            }
+            if (trialInFlight) {
+                throw new IOException("circuit half-open for " + name + "; trial request in flight");
+            }
+            trialInFlight = true;
+        }
+
+        synchronized void success(long latencyNanos) {
+            consecutiveFailures = 0;
+            trialInFlight = false;
+            Metrics.recordNanos("fetch.latency." + name, latencyNanos);
+            samplesMillis[nextSample] = (int) Math.min(latencyNanos / 1_000_000L, Integer.MAX_VALUE);
+            nextSample = (nextSample + 1) % SAMPLES;
+            if (sampleCount < SAMPLES) sampleCount++;
+        }
+
+        /** @param exhausted    whether the request has no retries left */
+        synchronized void failure(boolean exhausted) {
+            if (trialInFlight) { // the trial failed; stay open
+                trialInFlight = false;
+                openUntil = System.nanoTime() + breakerCooldownNanos;
+            } else if (exhausted && ++consecutiveFailures >= breakerThreshold) {
+                openUntil = System.nanoTime() + breakerCooldownNanos;
+            }
+        }
+
+        /** Ends a request that failed with neither a response nor an I/O error, e.g. on a bug in a reader. */
+        synchronized void abandon() {
+            trialInFlight = false; // leave the breaker half-open for the next request to try
+        }
+
+        synchronized int timeoutMillis(int floorMillis) {
+            if (sampleCount < MIN_SAMPLES) {
+                return floorMillis;
+            }
+            final int[] sorted = Arrays.copyOf(samplesMillis, sampleCount);
+            Arrays.sort(sorted);
+            final long p95 = sorted[(sampleCount * 95 - 1) / 100];
+            return (int) Math.max(floorMillis, Math.min(p95 * PERCENTILE_MULTIPLIER, maxTimeoutMillis));
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+
+/** Opens resources in remote repositories. Implementations must be safe for use by concurrent workers. */
+interface Fetcher extends AutoCloseable {
+
+    interface BodyReader<T> {
+        /** @param body   the response body, or {@code null} if the resource does not exist */
+        T read(InputStream body) throws IOException;
+    }
+
+    int CONNECT_TIMEOUT_MILLIS = 300;
+
+    /**
+     * @param url               the resource to fetch
+     * @param readTimeoutMillis the maximum time to wait for the server to respond
+     * @return  the response body, or {@code null} if the server reports that the resource does not exist
+     * @throws IOException  on any other failure, including non-2xx responses
+     */
+    InputStream open(String url, int readTimeoutMillis) throws IOException;
+
+    /**
+     * Opens the resource, passes the body to {@code reader} and closes it. Unlike with {@link #open}, a failure while
+     * reading the body can be retried as a whole by implementations that retry.
+     */
+    default <T> T fetch(String url, int readTimeoutMillis, BodyReader<T> reader) throws IOException {
+        try (InputStream body = open(url, readTimeoutMillis)) {
+            return reader.read(body);
+        }
+    }
+
+    @Override
+    void close();
+
+    /**
+     * Selected via the system property {@code verification.fetcher}: {@code "httpclient"} for the
+     * {@code java.net.http.HttpClient} backend (Java 11+), or {@code "urlconnection"} for the {@code HttpURLConnection}
+     * backend. When unset, the {@code HttpClient} backend is used if the runtime supports it.
+     */
+    static Fetcher create() {
+        final String type = System.getProperty("verification.fetcher");
+        if (type == null) {
+            try {
+                return newHttpClientFetcher();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                return new UrlConnectionFetcher();
+            }
+        }
+        switch (type) {
+        case "httpclient":
+            try {
+                return newHttpClientFetcher();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                throw new IllegalStateException("HttpClient backend unavailable on this runtime", e);
+            }
+        case "urlconnection": return new UrlConnectionFetcher();
+        default: throw new IllegalArgumentException("unknown fetcher: " + type);
+        }
+    }
+
+    static String host(String url) {
+        try {
+            return new URL(url).getHost();
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    static Fetcher newHttpClientFetcher() throws ReflectiveOperationException {
+        return (Fetcher) Class.forName("com.esaulpaugh.verification.HttpClientFetcher")
+                .getDeclaredConstructor()
+                .newInstance();
+    }
+}
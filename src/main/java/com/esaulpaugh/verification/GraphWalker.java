@@ -0,0 +1,445 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Walks the dependency graph below root coordinates and reports every artifact a build resolving them would verify:
+ * the POMs of the modules, their parents and imported BOMs, the {@code .module} files Gradle publishes, and the
+ * modules' jars and other packaged files. Each module is visited once, on a work-stealing pool, so independent
+ * subtrees are fetched concurrently.
+ * <p>
+ * The walk deliberately over-approximates Gradle's resolution: every version reached is kept rather than only the one
+ * conflict resolution would select, and exclusions are ignored. Extra entries in the metadata are harmless; missing
+ * ones are what cause another round of build failures. Version ranges are skipped.
+ */
+final class GraphWalker {
+
+    interface Sink {
+        /**
+         * @param guessed   whether the artifact's existence is inferred, as for a module's packaged file, whose name
+         *                  follows from the packaging by convention only, rather than known from a fetch
+         */
+        void artifact(ArtifactId id, List<Repository> repos, boolean guessed) throws IOException;
+    }
+
+    static final String DEFAULT_REPOSITORIES = "MavenRepo,Google,Gradle Central Plugin Repository";
+
+    private static final int MAX_INHERITANCE_DEPTH = 32;
+
+    /** A POM after inheritance, BOM import and interpolation. */
+    private static final class Model {
+        final String groupId;
+        final String artifactId;
+        final String version;
+        final String packaging;
+        /** where the POM was found */
+        final List<Repository> repos;
+        final Map<String, String> properties;
+        final Map<String, Pom.Dependency> managed;
+        final List<Pom.Dependency> dependencies;
+
+        Model(String groupId, String artifactId, String version, String packaging, List<Repository> repos,
+              Map<String, String> properties, Map<String, Pom.Dependency> managed, List<Pom.Dependency> dependencies) {
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+            this.version = version;
+            this.packaging = packaging;
+            this.repos = repos;
+            this.properties = properties;
+            this.managed = managed;
+            this.dependencies = dependencies;
+        }
+    }
+
+    private final List<List<Repository>> searchOrder;
+    private final Fetcher fetcher;
+    private final Sink sink;
+    private final ForkJoinPool pool;
+    private final ConcurrentHashMap<String, CompletableFuture<Model>> models = new ConcurrentHashMap<>(256);
+    private final ConcurrentHashMap<String, List<Repository>> foundIn = new ConcurrentHashMap<>(256); // coordinates -> repositories
+    private final ConcurrentHashMap<String, Integer> groupHints = new ConcurrentHashMap<>(64); // group -> index into searchOrder
+    private final Set<String> visited = ConcurrentHashMap.newKeySet();
+    private final Object waitLock = new Object();
+    private final Map<String, Thread> builders = new HashMap<>(); // guarded by waitLock: coordinates -> thread building the model
+    private final Map<Thread, String> waitingFor = new HashMap<>(); // guarded by waitLock: thread -> coordinates
+
+    GraphWalker(List<List<Repository>> searchOrder, Fetcher fetcher, Sink sink, int parallelism) {
+        if (searchOrder.isEmpty()) throw new IllegalArgumentException("no repositories to search");
+        this.searchOrder = searchOrder;
+        this.fetcher = fetcher;
+        this.sink = sink;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Searches the registry's repositories named in the system property {@code verification.graphRepositories}, a
+     * comma-separated list in search order, default {@value #DEFAULT_REPOSITORIES}. Parallelism is
+     * {@code verification.parallelism}.
+     */
+    static GraphWalker fromSystemProperties(RepositoryRegistry registry, Fetcher fetcher, Sink sink) {
+        final List<List<Repository>> searchOrder = new ArrayList<>();
+        for (String name : System.getProperty("verification.graphRepositories", DEFAULT_REPOSITORIES).split(",")) {
+            final List<Repository> repos = registry.get(name.trim());
+            if (repos == null) throw new IllegalArgumentException("unknown repository: " + name);
+            if (!searchOrder.contains(repos)) {
+                searchOrder.add(repos);
+            }
+        }
+        return new GraphWalker(
+                searchOrder,
+                fetcher,
+                sink,
+                Integer.getInteger("verification.parallelism", ConcurrentResolver.DEFAULT_PARALLELISM)
+        );
+    }
+
+    /** @param roots    coordinates of the form {@code group:name:version} */
+    void walk(List<String> roots) throws IOException {
+        final List<Visit> visits = new ArrayList<>(roots.size());
+        for (String root : roots) {
+            final String[] gav = root.split(":");
+            if (gav.length != 3) throw new IllegalArgumentException("expected group:name:version but found " + root);
+            visits.add(new Visit(gav[0], gav[1], gav[2], null, null));
+        }
+        try {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(visits);
+                }
+            });
+        } catch (UncheckedIOException uioe) {
+            throw uioe.getCause();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private final class Visit extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String groupId;
+        private final String artifactId;
+        private final String version;
+        private final String type;
+        private final String classifier;
+
+        Visit(String groupId, String artifactId, String version, String type, String classifier) {
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+            this.version = version;
+            this.type = type;
+            this.classifier = classifier;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                final List<Visit> children = visit();
+                if (!children.isEmpty()) {
+                    invokeAll(children);
+                }
+            } catch (IOException ioe) {
+                throw new UncheckedIOException(ioe);
+            }
+        }
+
+        private List<Visit> visit() throws IOException {
+            final String coords = groupId + ':' + artifactId + ':' + version;
+            if (version == null || version.isEmpty() || version.startsWith("[") || version.startsWith("(") || version.contains("${")) {
+                System.err.println("skipping " + coords + ": unresolvable version");
+                return Collections.emptyList();
+            }
+            final Model model = load(groupId, artifactId, version, 0);
+            if (model == null) {
+                return Collections.emptyList();
+            }
+            final String typeOrPackaging = type != null ? type : model.packaging;
+            final String extension = extension(typeOrPackaging);
+            if (extension != null) { // of the model's coordinates, which differ from these if the module was relocated
+                final String c = classifier != null ? classifier : classifier(typeOrPackaging);
+                final String file = model.artifactId + '-' + model.version + (c != null ? '-' + c : "") + '.' + extension;
+                sink.artifact(new ArtifactId(model.groupId, model.artifactId, model.version, file), model.repos, true);
+            }
+            if (!visited.add(model.groupId + ':' + model.artifactId + ':' + model.version)) {
+                return Collections.emptyList();
+            }
+            final List<Visit> children = new ArrayList<>(model.dependencies.size());
+            for (Pom.Dependency d : model.dependencies) {
+                final boolean transitive = d.scope == null || "compile".equals(d.scope) || "runtime".equals(d.scope);
+                if (transitive && !"true".equals(d.optional)) {
+                    children.add(new Visit(d.groupId, d.artifactId, d.version, d.type, d.classifier));
+                }
+            }
+            return children;
+        }
+    }
+
+    /** @return the file extension of a dependency type or packaging, or {@code null} if it packages no file */
+    private static String extension(String typeOrPackaging) {
+        if (typeOrPackaging == null) {
+            return "jar";
+        }
+        switch (typeOrPackaging) {
+        case "pom": return null;
+        case "bundle":
+        case "maven-plugin":
+        case "ejb":
+        case "ejb-client":
+        case "test-jar":
+        case "java-source":
+        case "javadoc": return "jar";
+        default: return typeOrPackaging;
+        }
+    }
+
+    /** @return the classifier a dependency type implies when none is given, e.g. {@code tests} for {@code test-jar} */
+    private static String classifier(String typeOrPackaging) {
+        if (typeOrPackaging == null) {
+            return null;
+        }
+        switch (typeOrPackaging) {
+        case "test-jar": return "tests";
+        case "java-source": return "sources";
+        case "javadoc": return "javadoc";
+        case "ejb-client": return "client";
+        default: return null;
+        }
+    }
+
+    /** Loads the effective model once per coordinates; concurrent callers wait for the first. */
+    private Model load(String groupId, String artifactId, String version, int depth) throws IOException {
+        if (depth > MAX_INHERITANCE_DEPTH) throw new IOException("parent or import chain too deep at " + groupId + ':' + artifactId + ':' + version);
+        final String coords = groupId + ':' + artifactId + ':' + version;
+        final CompletableFuture<Model> mine = new CompletableFuture<>();
+        final CompletableFuture<Model> existing = models.putIfAbsent(coords, mine);
+        if (existing != null) {
+            return existing.isDone() ? await(existing) : awaitBuilder(coords, existing);
+        }
+        synchronized (waitLock) {
+            builders.put(coords, Thread.currentThread());
+        }
+        try {
+            final Model model = build(groupId, artifactId, version, depth);
+            mine.complete(model);
+            return model;
+        } catch (IOException | RuntimeException | Error t) {
+            mine.completeExceptionally(t);
+            throw t;
+        } finally {
+            synchronized (waitLock) {
+                builders.remove(coords);
+            }
+        }
+    }
+
+    /**
+     * Waits for the model another load is building, unless the thread building it is, through the threads they wait
+     * for in turn, waiting for this one: a parent or BOM import cycle, on one thread or across several.
+     */
+    private Model awaitBuilder(String coords, CompletableFuture<Model> future) throws IOException {
+        final Thread current = Thread.currentThread();
+        synchronized (waitLock) {
+            for (String c = coords; c != null; ) {
+                final Thread builder = builders.get(c);
+                if (builder == null) {
+                    break;
+                }
+                if (builder == current) throw new IOException("parent or import cycle through " + coords);
+                c = waitingFor.get(builder);
+            }
+            waitingFor.put(current, coords);
+        }
+        try {
+            return await(future);
+        } finally {
+            synchronized (waitLock) {
+                waitingFor.remove(current);
+            }
+        }
+    }
+
+    private static Model await(CompletableFuture<Model> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", ie);
+        } catch (ExecutionException ee) {
+            final Throwable cause = ee.getCause();
+            if (cause instanceof IOException) throw new IOException(cause.getMessage(), cause);
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    private Model build(String groupId, String artifactId, String version, int depth) throws IOException {
+        final String coords = groupId + ':' + artifactId + ':' + version;
+        final String pomFile = artifactId + '-' + version + ".pom";
+        final ArtifactId pomId = new ArtifactId(groupId, artifactId, version, pomFile);
+        final Pom pom = fetchPom(coords, pomId);
+        if (pom == null) {
+            System.err.println("skipping " + coords + ": no POM in any repository");
+            return null;
+        }
+        final List<Repository> repos = foundIn.get(coords);
+        sink.artifact(pomId, repos, false);
+        if (pom.gradleMetadata) {
+            sink.artifact(new ArtifactId(groupId, artifactId, version, artifactId + '-' + version + ".module"), repos, false);
+        }
+        if (pom.relocationGroupId != null || pom.relocationArtifactId != null || pom.relocationVersion != null) {
+            final String rg = pom.relocationGroupId != null ? pom.relocationGroupId : groupId;
+            final String ra = pom.relocationArtifactId != null ? pom.relocationArtifactId : artifactId;
+            final String rv = pom.relocationVersion != null ? pom.relocationVersion : version;
+            if (!coords.equals(rg + ':' + ra + ':' + rv)) {
+                System.err.println("following relocation of " + coords + " to " + rg + ':' + ra + ':' + rv);
+                return load(rg, ra, rv, depth + 1);
+            }
+        }
+
+        Model parent = null;
+        if (pom.parentGroupId != null && pom.parentArtifactId != null && pom.parentVersion != null) {
+            parent = load(pom.parentGroupId, pom.parentArtifactId, pom.parentVersion, depth + 1);
+        }
+        final Map<String, String> props = new HashMap<>();
+        if (parent != null) {
+            props.putAll(parent.properties);
+        }
+        props.putAll(pom.properties);
+        final String g = pom.groupId != null ? pom.groupId : pom.parentGroupId;
+        final String v = pom.version != null ? pom.version : pom.parentVersion;
+        props.put("project.groupId", g);
+        props.put("project.artifactId", artifactId);
+        props.put("project.version", v);
+        props.put("pom.groupId", g);
+        props.put("pom.version", v);
+        props.put("groupId", g);
+        props.put("version", v);
+        if (pom.parentVersion != null) {
+            props.put("project.parent.groupId", pom.parentGroupId);
+            props.put("project.parent.version", pom.parentVersion);
+            props.put("parent.version", pom.parentVersion);
+        }
+
+        final Map<String, Pom.Dependency> managed = new LinkedHashMap<>();
+        final List<Pom.Dependency> imports = new ArrayList<>();
+        for (Pom.Dependency raw : pom.managed) {
+            final Pom.Dependency d = interpolate(raw, props);
+            if ("import".equals(d.scope) && "pom".equals(d.type)) {
+                imports.add(d);
+            } else {
+                managed.put(d.managementKey(), d);
+            }
+        }
+        if (parent != null) {
+            for (Map.Entry<String, Pom.Dependency> e : parent.managed.entrySet()) {
+                managed.putIfAbsent(e.getKey(), e.getValue());
+            }
+        }
+        for (Pom.Dependency bom : imports) {
+            final Model imported = load(bom.groupId, bom.artifactId, bom.version, depth + 1);
+            if (imported != null) {
+                for (Map.Entry<String, Pom.Dependency> e : imported.managed.entrySet()) {
+                    managed.putIfAbsent(e.getKey(), e.getValue());
+                }
+            }
+        }
+
+        final List<Pom.Dependency> dependencies = new ArrayList<>();
+        if (parent != null) {
+            dependencies.addAll(parent.dependencies);
+        }
+        for (Pom.Dependency raw : pom.dependencies) {
+            final Pom.Dependency d = interpolate(raw, props);
+            final Pom.Dependency m = managed.get(d.managementKey());
+            if (m != null) {
+                if (d.version == null) d.version = m.version;
+                if (d.scope == null) d.scope = m.scope;
+            }
+            dependencies.add(d);
+        }
+        return new Model(g, artifactId, v, pom.packaging, repos, props, managed, dependencies);
+    }
+
+    private Pom fetchPom(String coords, ArtifactId pomId) throws IOException {
+        final String path = pomId.path();
+        final Integer hint = groupHints.get(pomId.group);
+        final int start = hint != null ? hint : 0;
+        for (int i = 0; i < searchOrder.size(); i++) {
+            final int idx = (start + i) % searchOrder.size();
+            final List<Repository> repos = searchOrder.get(idx);
+            for (Repository repo : repos) {
+                final String url = repo.url + path;
+                final Pom pom = fetcher.fetch(url, HashResolver.DOWNLOAD_TIMEOUT_MILLIS, is -> is != null ? Pom.parse(is, url) : null);
+                if (pom != null) {
+                    groupHints.put(pomId.group, idx);
+                    foundIn.put(coords, repos);
+                    return pom;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Pom.Dependency interpolate(Pom.Dependency raw, Map<String, String> props) {
+        final Pom.Dependency d = new Pom.Dependency();
+        d.groupId = interpolate(raw.groupId, props);
+        d.artifactId = interpolate(raw.artifactId, props);
+        d.version = interpolate(raw.version, props);
+        d.type = interpolate(raw.type, props);
+        d.classifier = interpolate(raw.classifier, props);
+        d.scope = interpolate(raw.scope, props);
+        d.optional = interpolate(raw.optional, props);
+        return d;
+    }
+
+    /** Substitutes {@code ${name}} references, including references within substituted values, up to a fixed depth. */
+    private static String interpolate(String s, Map<String, String> props) {
+        for (int pass = 0; s != null && pass < 8; pass++) {
+            final int start = s.indexOf("${");
+            if (start < 0) {
+                return s;
+            }
+            final int end = s.indexOf('}', start);
+            if (end < 0) {
+                return s;
+            }
+            final String value = props.get(s.substring(start + 2, end));
+            if (value == null) {
+                return s; // left for the caller to skip
+            }
+            s = s.substring(0, start) + value + s.substring(end + 1);
+        }
+        return s;
+    }
+}
@@ -0,0 +1,500 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Finds an artifact's checksums: in the cache, else by hashing a local copy, else from the repository's checksum files,
+ * else by downloading and hashing the artifact. Whatever must be computed is computed in one read of the artifact.
+ * Concurrent requests for the same URL share a single lookup. When an artifact may come from several repositories,
+ * they are probed in parallel. A downloaded artifact is checked against whatever checksum file the repository does
+ * have, e.g. the {@code .sha1} that many Google Maven artifacts carry in place of a {@code .sha256}.
+ */
+final class HashResolver implements Closeable {
+
+    /** Initial read timeouts; a {@link FetchPolicy} may extend them for slow hosts. */
+    static final int SIDECAR_TIMEOUT_MILLIS = 250;
+    static final int DOWNLOAD_TIMEOUT_MILLIS = 900;
+
+    /** Enough for a digest, a file name and a line terminator; the rest of a longer checksum file is not read. */
+    private static final int MAX_CHECKSUM_FILE_BYTES = 512;
+
+    private final Checksum[] checksums;
+    private final Fetcher fetcher;
+    private final EnumMap<Checksum, ChecksumCache> caches;
+    private final LocalArtifactStore local;
+    private final boolean verifyDownloads;
+    private final ConcurrentHashMap<String, CompletableFuture<Artifact>> inFlight = new ConcurrentHashMap<>(64);
+    private final AtomicLong coalesced = new AtomicLong();
+    private volatile Consumer<String> log = System.err::println;
+    private final ThreadLocal<MessageDigest[]> digests = ThreadLocal.withInitial(this::newMessageDigests);
+    private final ExecutorService probeExecutor = Executors.newCachedThreadPool(r -> {
+        final Thread t = new Thread(r, "probe");
+        t.setDaemon(true);
+        return t;
+    });
+    /** Shared by all workers, so that digesting large artifacts in parallel never takes more threads than cores. */
+    private final ExecutorService digestExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+        final Thread t = new Thread(r, "digest");
+        t.setDaemon(true);
+        return t;
+    });
+
+    HashResolver(Checksum[] checksums, Fetcher fetcher, EnumMap<Checksum, ChecksumCache> caches, LocalArtifactStore local, boolean verifyDownloads) {
+        this.checksums = checksums;
+        this.fetcher = fetcher;
+        this.caches = caches;
+        this.local = local;
+        this.verifyDownloads = verifyDownloads;
+    }
+
+    /** Download verification is disabled by {@code -Dverification.verifyDownloads=false}. */
+    static HashResolver fromSystemProperties(Fetcher fetcher) throws IOException {
+        return fromSystemProperties(fetcher, LocalArtifactStore.fromSystemProperties());
+    }
+
+    static HashResolver fromSystemProperties(Fetcher fetcher, LocalArtifactStore local) throws IOException {
+        final Checksum[] checksums = Checksum.fromSystemProperties();
+        final EnumMap<Checksum, ChecksumCache> caches = new EnumMap<>(Checksum.class);
+        try {
+            for (Checksum c : checksums) {
+                caches.put(c, ChecksumCache.fromSystemProperties(c));
+            }
+        } catch (IOException ioe) {
+            for (ChecksumCache cache : caches.values()) {
+                cache.close();
+            }
+            throw ioe;
+        }
+        return new HashResolver(checksums, fetcher, caches, local, verifyDownloadsFromSystemProperties());
+    }
+
+    /**
+     * Trusts nothing on this machine: checksums are neither read from nor written to the persistent caches, and local
+     * copies of artifacts are ignored, so every checksum comes from the repositories.
+     */
+    static HashResolver remoteOnly(Fetcher fetcher) {
+        final Checksum[] checksums = Checksum.fromSystemProperties();
+        final EnumMap<Checksum, ChecksumCache> caches = new EnumMap<>(Checksum.class);
+        for (Checksum c : checksums) {
+            caches.put(c, ChecksumCache.inMemory(c.hexChars));
+        }
+        return new HashResolver(checksums, fetcher, caches, LocalArtifactStore.none(), verifyDownloadsFromSystemProperties());
+    }
+
+    private static boolean verifyDownloadsFromSystemProperties() {
+        return !"false".equals(System.getProperty("verification.verifyDownloads"));
+    }
+
+    /** Receives a line per artifact saying where its checksums came from; standard error by default. */
+    void logTo(Consumer<String> log) {
+        this.log = log;
+    }
+
+    /** @return one digest per configured checksum, in the same order */
+    MessageDigest[] newMessageDigests() {
+        final MessageDigest[] mds = new MessageDigest[checksums.length];
+        for (int i = 0; i < mds.length; i++) {
+            mds[i] = checksums[i].newMessageDigest();
+        }
+        return mds;
+    }
+
+    /** @return this thread's digests from {@link #newMessageDigests()}, created on first use */
+    MessageDigest[] threadDigests() {
+        return digests.get();
+    }
+
+    /**
+     * @param repos the repositories to try, in priority order. When there are several, the artifact is resolved from
+     *              the first that has its checksum file, though all are asked at once.
+     * @param mds   digests from {@link #newMessageDigests()}, not shared with other threads
+     * @return  the artifact, with its checksums in {@link Checksum} order
+     */
+    Artifact resolve(final List<Repository> repos, final ArtifactId id, final MessageDigest[] mds) throws IOException {
+        final String key = repos.get(0).url + id.path();
+        final CompletableFuture<Artifact> mine = new CompletableFuture<>();
+        final CompletableFuture<Artifact> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            Metrics.count("resolve.coalesced");
+            log.accept("COALESCED\t" + key);
+            return await(existing);
+        }
+        final long start = System.nanoTime();
+        try {
+            final Artifact artifact = lookup(repos, id, mds);
+            Metrics.recordNanos("resolve.latency", System.nanoTime() - start);
+            mine.complete(artifact);
+            return artifact;
+        } catch (IOException | RuntimeException | Error t) {
+            mine.completeExceptionally(t);
+            throw t;
+        } finally {
+            inFlight.remove(key, mine); // later duplicates are served by the cache, which is filled before completion
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", ie);
+        } catch (ExecutionException ee) {
+            final Throwable cause = ee.getCause();
+            if (cause instanceof IOException) throw (IOException) cause; // keep the type, e.g. FileNotFoundException
+            if (cause instanceof UncheckedIOException) throw ((UncheckedIOException) cause).getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    private Artifact lookup(final List<Repository> repos, final ArtifactId id, final MessageDigest[] mds) throws IOException {
+        final String artifactPath = id.path();
+        EnumMap<Checksum, Digest> hashes = null;
+        for (Repository repo : repos) {
+            final EnumMap<Checksum, Digest> cached = cached(repo.url + artifactPath);
+            if (cached.size() == checksums.length) {
+                Metrics.count("resolve.cached");
+                log.accept("CACHED\t\t" + repo.url + artifactPath);
+                return new Artifact(id.file, Collections.unmodifiableMap(cached), repo.origin);
+            }
+            if (hashes == null) {
+                hashes = cached; // keep any partial hit from the highest-priority repository
+            }
+        }
+        Repository source = repos.get(0);
+        final Path localFile = local.find(artifactPath);
+        if (localFile != null) {
+            try (FileChannel ch = FileChannel.open(localFile, StandardOpenOption.READ)) {
+                final int[] missing = missing(hashes);
+                putAll(hashes, missing, Hashing.digest(ch, digestExecutor, select(mds, missing)));
+            }
+            Metrics.count("resolve.local");
+            log.accept("LOCAL\t\t" + localFile);
+        } else {
+            final Probe probe = repos.size() > 1 ? probe(repos, artifactPath) : null;
+            if (probe != null) {
+                if (probe.repo != source) {
+                    source = probe.repo;
+                    hashes = new EnumMap<>(Checksum.class);
+                }
+                hashes.put(checksums[0], probe.digest);
+                fetchRemote(source.url + artifactPath, hashes, mds);
+            } else {
+                for (int i = 0; ; i++) { // no checksum file anywhere; take the artifact from the first repository that has it
+                    source = repos.get(i);
+                    try {
+                        fetchRemote(source.url + artifactPath, hashes, mds);
+                        break;
+                    } catch (FileNotFoundException fnfe) {
+                        if (i == repos.size() - 1) throw fnfe;
+                        hashes = new EnumMap<>(Checksum.class);
+                    }
+                }
+            }
+        }
+        final String artifactUrl = source.url + artifactPath;
+        for (Map.Entry<Checksum, Digest> e : hashes.entrySet()) {
+            caches.get(e.getKey()).put(artifactUrl, e.getValue());
+        }
+        return new Artifact(id.file, Collections.unmodifiableMap(hashes), source.origin);
+    }
+
+    private EnumMap<Checksum, Digest> cached(String artifactUrl) {
+        final EnumMap<Checksum, Digest> hashes = new EnumMap<>(Checksum.class);
+        for (Checksum c : checksums) {
+            final Digest cached = caches.get(c).get(artifactUrl);
+            if (cached != null) {
+                hashes.put(c, cached);
+            }
+        }
+        return hashes;
+    }
+
+    /** Fetches the missing checksum files from the repository, then downloads and hashes the artifact if any are still missing. */
+    private void fetchRemote(final String artifactUrl, final Map<Checksum, Digest> hashes, final MessageDigest[] mds) throws IOException {
+        final int[] missing = missing(hashes);
+        final Checksum[] wanted = new Checksum[missing.length];
+        for (int i = 0; i < missing.length; i++) {
+            wanted[i] = checksums[missing[i]];
+        }
+        final Digest[] found = fetchHashes(artifactUrl, wanted);
+        for (int i = 0; i < wanted.length; i++) {
+            if (found[i] != null) {
+                hashes.put(wanted[i], found[i]);
+            }
+        }
+        if (hashes.size() < checksums.length) {
+            downloadAndHash(artifactUrl, hashes, mds);
+            Metrics.count("resolve.hashed");
+            log.accept("HASHED\t\t" + artifactUrl);
+        } else {
+            Metrics.count("resolve.sidecar");
+            log.accept("FOUND HASH\t" + artifactUrl);
+        }
+    }
+
+    private Digest fetchHash(String artifactUrl, Checksum c) throws IOException {
+        return fetcher.fetch(artifactUrl + '.' + c.id, SIDECAR_TIMEOUT_MILLIS, is -> is != null ? readHash(is, c) : null);
+    }
+
+    /** Fetches several checksum files at once. @return the digests in the same order, {@code null} for those missing */
+    private Digest[] fetchHashes(String artifactUrl, Checksum[] kinds) throws IOException {
+        final Digest[] digests = new Digest[kinds.length];
+        if (kinds.length == 0) {
+            return digests;
+        }
+        final List<CompletableFuture<Digest>> others = new ArrayList<>(kinds.length - 1);
+        for (int i = 1; i < kinds.length; i++) {
+            final Checksum c = kinds[i];
+            others.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return fetchHash(artifactUrl, c);
+                } catch (IOException ioe) {
+                    throw new UncheckedIOException(ioe);
+                }
+            }, probeExecutor));
+        }
+        digests[0] = fetchHash(artifactUrl, kinds[0]); // on this thread
+        for (int i = 1; i < kinds.length; i++) {
+            digests[i] = await(others.get(i - 1));
+        }
+        return digests;
+    }
+
+    private static final Object NO_ANSWER = new Object();
+
+    private static final class Probe {
+        final Repository repo;
+        final Digest digest;
+
+        Probe(Repository repo, Digest digest) {
+            this.repo = repo;
+            this.digest = digest;
+        }
+    }
+
+    /**
+     * Requests the first configured checksum file from every repository at once, but takes the answers in priority
+     * order: a repository's answer is taken as soon as every repository before it has answered without the file.
+     *
+     * @return  the first repository in priority order to have the file, or {@code null} if none has it
+     */
+    private Probe probe(List<Repository> repos, String artifactPath) throws IOException {
+        final CompletableFuture<Probe> first = new CompletableFuture<>();
+        final Object[] answers = new Object[repos.size()]; // guarded by itself: a Probe, NO_ANSWER, or null if pending
+        for (int i = 0; i < answers.length; i++) {
+            final int index = i;
+            final Repository repo = repos.get(i);
+            CompletableFuture.supplyAsync(() -> {
+                try {
+                    final Digest digest = fetchHash(repo.url + artifactPath, checksums[0]);
+                    return digest != null ? new Probe(repo, digest) : null;
+                } catch (IOException ioe) {
+                    throw new UncheckedIOException(ioe);
+                }
+            }, probeExecutor).whenComplete((probe, err) -> {
+                synchronized (answers) {
+                    answers[index] = probe != null ? probe : NO_ANSWER;
+                    for (Object answer : answers) {
+                        if (answer == null) {
+                            return; // a repository of higher priority has yet to answer
+                        }
+                        if (answer != NO_ANSWER) {
+                            first.complete((Probe) answer);
+                            return;
+                        }
+                    }
+                }
+                first.complete(null); // unreachable repositories are tried again, in order, by the fallback
+            });
+        }
+        return await(first);
+    }
+
+    /** @return the indices of the configured checksums not yet in {@code hashes} */
+    private int[] missing(Map<Checksum, Digest> hashes) {
+        final int[] missing = new int[checksums.length - hashes.size()];
+        for (int i = 0, j = 0; i < checksums.length; i++) {
+            if (!hashes.containsKey(checksums[i])) {
+                missing[j++] = i;
+            }
+        }
+        return missing;
+    }
+
+    private static MessageDigest[] select(MessageDigest[] mds, int[] indices) {
+        final MessageDigest[] selected = new MessageDigest[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            selected[i] = mds[indices[i]];
+        }
+        return selected;
+    }
+
+    private void putAll(Map<Checksum, Digest> hashes, int[] indices, byte[][] digests) {
+        for (int i = 0; i < indices.length; i++) {
+            hashes.put(checksums[indices[i]], Digest.of(digests[i]));
+        }
+    }
+
+    /**
+     * Reads a checksum file leniently: surrounding whitespace is ignored, as is anything after the first token, such as
+     * the file name that {@code sha256sum}-style files carry.
+     *
+     * @throws IOException  if the first token is not a hex digest of the checksum's length
+     */
+    static Digest readHash(InputStream is, Checksum c) throws IOException {
+        final byte[] buffer = new byte[MAX_CHECKSUM_FILE_BYTES];
+        int read = 0;
+        for (int n; read < buffer.length && (n = is.read(buffer, read, buffer.length - read)) != -1; ) {
+            read += n;
+        }
+        int start = 0;
+        while (start < read && isWhitespace(buffer[start])) {
+            start++;
+        }
+        int end = start;
+        while (end < read && !isWhitespace(buffer[end])) {
+            end++;
+        }
+        if (end == buffer.length) throw new IOException("bad " + c.id + " file: no digest in the first " + buffer.length + " bytes");
+        if (end - start != c.hexChars) throw new IOException("bad " + c.id + " file: expected " + c.hexChars + " hex chars but found " + (end - start));
+        try {
+            return Digest.fromHex(buffer, start, end - start);
+        } catch (IllegalArgumentException iae) {
+            throw new IOException("bad " + c.id + " file: " + iae.getMessage(), iae);
+        }
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f';
+    }
+
+    /**
+     * Downloads the artifact and computes the missing checksums. If the repository publishes any checksum for it,
+     * the strongest is computed in the same pass and a mismatch fails the download.
+     */
+    private void downloadAndHash(final String artifactUrl, final Map<Checksum, Digest> hashes, final MessageDigest[] mds) throws IOException {
+        final int[] missing = missing(hashes);
+        final Map.Entry<Checksum, Digest> reference = verifyDownloads ? reference(artifactUrl, hashes) : null;
+        final MessageDigest[] selected = select(mds, missing);
+        final MessageDigest[] toCompute;
+        if (reference != null) {
+            toCompute = Arrays.copyOf(selected, selected.length + 1);
+            toCompute[selected.length] = reference.getKey().newMessageDigest();
+        } else {
+            toCompute = selected;
+        }
+        putAll(hashes, missing, fetcher.fetch(artifactUrl, DOWNLOAD_TIMEOUT_MILLIS, is -> {
+            if (is == null) throw new FileNotFoundException(artifactUrl);
+            final byte[][] digests = Hashing.digest(is, digestExecutor, toCompute);
+            if (reference != null) {
+                final Digest actual = Digest.of(digests[selected.length]);
+                if (!actual.equals(reference.getValue())) {
+                    throw new ChecksumMismatchException(reference.getKey(), artifactUrl, reference.getValue(), actual);
+                }
+            }
+            return digests;
+        }));
+    }
+
+    /**
+     * @return  the strongest known checksum of the artifact: one already resolved, else one of the checksum files
+     *          for kinds that are not configured, or {@code null} if the repository publishes none
+     */
+    private Map.Entry<Checksum, Digest> reference(String artifactUrl, Map<Checksum, Digest> hashes) throws IOException {
+        Map.Entry<Checksum, Digest> strongest = null;
+        for (Map.Entry<Checksum, Digest> e : hashes.entrySet()) { // EnumMap iterates weakest to strongest
+            strongest = e;
+        }
+        if (strongest != null) {
+            return strongest;
+        }
+        final EnumSet<Checksum> others = EnumSet.allOf(Checksum.class);
+        others.removeAll(Arrays.asList(checksums));
+        final Checksum[] kinds = others.toArray(new Checksum[0]);
+        final Digest[] found = fetchHashes(artifactUrl, kinds);
+        for (int i = kinds.length - 1; i >= 0; i--) {
+            if (found[i] != null) {
+                return new AbstractMap.SimpleImmutableEntry<>(kinds[i], found[i]);
+            }
+        }
+        return null;
+    }
+
+    /** @return the number of requests that waited on an identical request already in flight */
+    long coalescedCount() {
+        return coalesced.get();
+    }
+
+    /** Adds the cache hit and miss counts to {@link Metrics}. */
+    void recordCacheMetrics() {
+        for (Map.Entry<Checksum, ChecksumCache> e : caches.entrySet()) {
+            Metrics.count("cache." + e.getKey().id + ".hits", e.getValue().hits());
+            Metrics.count("cache." + e.getKey().id + ".misses", e.getValue().misses());
+        }
+    }
+
+    String stats() {
+        final StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Checksum, ChecksumCache> e : caches.entrySet()) {
+            sb.append(e.getKey().id).append(' ').append(e.getValue()).append('\n');
+        }
+        return sb.append(coalescedCount()).append(" duplicate requests coalesced").toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        probeExecutor.shutdownNow();
+        digestExecutor.shutdownNow();
+        IOException first = null;
+        for (ChecksumCache cache : caches.values()) {
+            try {
+                cache.close();
+            } catch (IOException ioe) {
+                if (first == null) first = ioe;
+            }
+        }
+        if (first != null) throw first;
+    }
+}
@@ -0,0 +1,151 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+/**
+ * Feeds artifact bytes to one or more {@link MessageDigest}s in a single read, through pooled, reusable buffers.
+ * Channels (e.g. local files) are read into direct buffers, avoiding NIO's copy into a temporary direct buffer; streams
+ * (e.g. HTTP response bodies) are read straight into the backing array of a heap buffer, with no intermediate
+ * {@code BufferedInputStream}. Once an input exceeds {@code -Dverification.parallelDigestThreshold} bytes (default 8 MiB)
+ * each buffer is fed to multiple digests concurrently, on the caller's bounded helper executor. The buffer size is set
+ * by {@code -Dverification.bufferSize} (bytes, default 64 KiB).
+ */
+final class Hashing {
+
+    private Hashing() {}
+
+    static final int BUFFER_SIZE = Integer.getInteger("verification.bufferSize", 1 << 16);
+
+    static final long PARALLEL_THRESHOLD = Long.getLong("verification.parallelDigestThreshold", 1L << 23);
+
+    private static final ConcurrentLinkedQueue<ByteBuffer> DIRECT_POOL = new ConcurrentLinkedQueue<>();
+    private static final ConcurrentLinkedQueue<ByteBuffer> HEAP_POOL = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Digests the remaining bytes of the channel and resets the digests.
+     *
+     * @param helpers   runs the updates of all but the first digest of a large input concurrently, or {@code null} to
+     *                  run every update on the calling thread
+     */
+    static byte[][] digest(ReadableByteChannel ch, Executor helpers, MessageDigest... mds) throws IOException {
+        final ByteBuffer buf = acquire(DIRECT_POOL, true);
+        final long start = System.nanoTime();
+        try {
+            long total = 0;
+            int read;
+            while ((read = ch.read(buf)) != -1) {
+                buf.flip();
+                update(mds, buf, (total += read) > PARALLEL_THRESHOLD ? helpers : null);
+                buf.clear();
+            }
+            final byte[][] digests = digests(mds);
+            record("hash.local", total, start);
+            return digests;
+        } finally {
+            reset(mds);
+            release(DIRECT_POOL, buf);
+        }
+    }
+
+    /**
+     * Digests the remaining bytes of the stream and resets the digests.
+     *
+     * @param helpers   as for {@link #digest(ReadableByteChannel, Executor, MessageDigest...)}
+     */
+    static byte[][] digest(InputStream in, Executor helpers, MessageDigest... mds) throws IOException {
+        final ByteBuffer buf = acquire(HEAP_POOL, false);
+        try {
+            final byte[] array = buf.array();
+            final int offset = buf.arrayOffset();
+            final long start = System.nanoTime();
+            long total = 0;
+            int read;
+            while ((read = in.read(array, offset, BUFFER_SIZE)) != -1) {
+                buf.limit(read);
+                update(mds, buf, (total += read) > PARALLEL_THRESHOLD ? helpers : null);
+                buf.clear();
+            }
+            final byte[][] digests = digests(mds);
+            record("hash.download", total, start);
+            return digests;
+        } finally {
+            reset(mds);
+            release(HEAP_POOL, buf);
+        }
+    }
+
+    /** Stream throughput includes the time spent waiting on the network, so it can be compared with local throughput. */
+    private static void record(String prefix, long bytes, long startNanos) {
+        Metrics.count(prefix + ".bytes", bytes);
+        Metrics.count(prefix + ".nanos", System.nanoTime() - startNanos);
+    }
+
+    /** @param helpers    for the updates of all but the first digest, or {@code null} to run them on this thread */
+    private static void update(MessageDigest[] mds, ByteBuffer chunk, Executor helpers) {
+        if (mds.length == 1) {
+            mds[0].update(chunk);
+        } else if (helpers == null) {
+            for (MessageDigest md : mds) {
+                md.update(chunk.duplicate());
+            }
+        } else {
+            final CompletableFuture<?>[] others = new CompletableFuture<?>[mds.length - 1];
+            for (int i = 0; i < others.length; i++) {
+                final MessageDigest md = mds[i + 1];
+                final ByteBuffer view = chunk.duplicate();
+                others[i] = CompletableFuture.runAsync(() -> md.update(view), helpers);
+            }
+            mds[0].update(chunk.duplicate());
+            CompletableFuture.allOf(others).join(); // the buffer is reused once every digest has consumed it
+        }
+    }
+
+    private static byte[][] digests(MessageDigest[] mds) {
+        final byte[][] digests = new byte[mds.length][];
+        for (int i = 0; i < mds.length; i++) {
+            digests[i] = mds[i].digest();
+        }
+        return digests;
+    }
+
+    private static void reset(MessageDigest[] mds) {
+        for (MessageDigest md : mds) {
+            md.reset();
+        }
+    }
+
+    private static ByteBuffer acquire(ConcurrentLinkedQueue<ByteBuffer> pool, boolean direct) {
+        final ByteBuffer buf = pool.poll();
+        if (buf != null) {
+            return buf;
+        }
+        return direct ? ByteBuffer.allocateDirect(BUFFER_SIZE) : ByteBuffer.allocate(BUFFER_SIZE);
+    }
+
+    private static void release(ConcurrentLinkedQueue<ByteBuffer> pool, ByteBuffer buf) {
+        buf.clear();
+        pool.offer(buf); // the pool grows only to the number of concurrent workers
+    }
+}
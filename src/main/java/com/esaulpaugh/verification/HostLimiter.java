@@ -0,0 +1,128 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Caps the number of tasks running against any one repository host. A task over its host's cap waits in a queue for
+ * that host rather than on a worker thread, so that workers are never parked behind a busy host while tasks for other
+ * hosts are ready to run. A limiter shared by several resolvers caps their combined load on each host.
+ */
+final class HostLimiter {
+
+    private final int limit;
+    private final ConcurrentHashMap<String, Host> hosts = new ConcurrentHashMap<>(8);
+
+    HostLimiter(int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("limit must be positive");
+        this.limit = limit;
+    }
+
+    /**
+     * Hands the task to the executor once fewer than the limit of tasks for the host are running, possibly now.
+     *
+     * @param rejected  called instead, on whichever thread dispatches the task, if the executor rejects it, e.g. after
+     *                  a shutdown; the task's slot then passes to the next waiting task
+     */
+    void execute(String host, Executor executor, Runnable task, Consumer<RejectedExecutionException> rejected) {
+        final Host h = hosts.computeIfAbsent(host, k -> new Host());
+        final Dispatch d = new Dispatch(executor, task, rejected);
+        if (h.admit(d)) {
+            h.start(d);
+        }
+    }
+
+    /** @return the number of tasks waiting for the host */
+    int waiting(String host) {
+        final Host h = hosts.get(host);
+        return h != null ? h.waiting() : 0;
+    }
+
+    private static final class Dispatch {
+
+        final Executor executor;
+        final Runnable task;
+        final Consumer<RejectedExecutionException> rejected;
+
+        Dispatch(Executor executor, Runnable task, Consumer<RejectedExecutionException> rejected) {
+            this.executor = executor;
+            this.task = task;
+            this.rejected = rejected;
+        }
+    }
+
+    private final class Host {
+
+        private final ArrayDeque<Dispatch> waiting = new ArrayDeque<>();
+        private int running = 0;
+
+        /** @return whether the task may be started now; if not, it is queued */
+        synchronized boolean admit(Dispatch d) {
+            if (running < limit) {
+                running++;
+                return true;
+            }
+            waiting.add(d);
+            return false;
+        }
+
+        /** Starts the admitted task, or, for as long as executors reject them, the tasks waiting after it. */
+        void start(Dispatch d) {
+            while (d != null) {
+                final Runnable task = d.task;
+                try {
+                    d.executor.execute(() -> {
+                        try {
+                            task.run();
+                        } finally {
+                            release();
+                        }
+                    });
+                    return;
+                } catch (RejectedExecutionException ree) {
+                    d.rejected.accept(ree);
+                    d = next();
+                }
+            }
+        }
+
+        /** Passes the finished task's slot to the next waiting task, if any. */
+        void release() {
+            final Dispatch next = next();
+            if (next != null) {
+                start(next);
+            }
+        }
+
+        /** @return the next waiting task, which takes over the current slot, or {@code null} if the slot is freed */
+        private synchronized Dispatch next() {
+            final Dispatch next = waiting.poll();
+            if (next == null) {
+                running--;
+            }
+            return next;
+        }
+
+        synchronized int waiting() {
+            return waiting.size();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import java.io.IOException;
+
+/** A non-2xx response other than 404, which {@link Fetcher}s report as a missing resource instead. */
+final class HttpStatusException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    final int code;
+
+    HttpStatusException(int code, String url) {
+        super("HTTP " + code + " for " + url);
+        this.code = code;
+    }
+
+    /** @return whether the server may answer differently if asked again */
+    boolean isTransient() {
+        return code / 100 == 5 || code == 408 || code == 429;
+    }
+}
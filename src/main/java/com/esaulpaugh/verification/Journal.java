@@ -0,0 +1,174 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A write-ahead log of resolved artifacts, so that a run which fails part way can be resumed without resolving again
+ * what it had already resolved. Each artifact is appended as one tab-separated line:
+ * <pre>
+ * group:name:version  file  origin  sha256=&lt;hex&gt;  [sha512=&lt;hex&gt; ...]
+ * </pre>
+ * Every line is flushed to the file as it is written, which survives the process dying; the file is forced to disk at
+ * most once per {@code syncMillis}, and on close, which bounds what a crash of the machine can lose. A line torn by an
+ * interrupted write is ignored on recovery.
+ */
+final class Journal implements Closeable {
+
+    static final long DEFAULT_SYNC_MILLIS = 1000;
+
+    private final FileChannel channel;
+    private final Writer out;
+    private final long syncNanos;
+    private final Map<String, Artifact> recovered; // component key:file -> artifact
+    private long lastSync = System.nanoTime();
+    private boolean dirty = false;
+
+    private Journal(FileChannel channel, long syncMillis, Map<String, Artifact> recovered) {
+        this.channel = channel;
+        this.out = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8), 1 << 12);
+        this.syncNanos = TimeUnit.MILLISECONDS.toNanos(syncMillis);
+        this.recovered = recovered;
+    }
+
+    /**
+     * @param resume    whether to recover the artifacts already in the file and append to it, rather than truncate it
+     * @param checksums the configured checksums; recovered artifacts missing any of them are resolved again
+     */
+    static Journal open(Path file, boolean resume, Checksum[] checksums, long syncMillis) throws IOException {
+        final Map<String, Artifact> recovered = resume ? recover(file, checksums) : Collections.emptyMap();
+        final Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        final FileChannel channel = resume
+                ? FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)
+                : FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        if (resume && channel.size() > 0) {
+            channel.write(ByteBuffer.wrap(new byte[] { '\n' })); // terminate a torn last line
+        }
+        return new Journal(channel, syncMillis, recovered);
+    }
+
+    /** The interval between syncs is {@code -Dverification.journalSyncMillis}, default {@value #DEFAULT_SYNC_MILLIS}. */
+    static Journal fromSystemProperties(Path file, boolean resume) throws IOException {
+        return open(file, resume, Checksum.fromSystemProperties(), Long.getLong("verification.journalSyncMillis", DEFAULT_SYNC_MILLIS));
+    }
+
+    private static Map<String, Artifact> recover(Path file, Checksum[] checksums) throws IOException {
+        final Map<String, Artifact> recovered = new HashMap<>(1024);
+        final List<Checksum> wanted = Arrays.asList(checksums);
+        try (BufferedReader br = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                final String[] fields = line.split("\t");
+                if (fields.length < 4) {
+                    continue;
+                }
+                final EnumMap<Checksum, Digest> hashes = new EnumMap<>(Checksum.class);
+                try {
+                    for (int i = 3; i < fields.length; i++) {
+                        final int eq = fields[i].indexOf('=');
+                        if (eq < 0) throw new IllegalArgumentException("torn");
+                        final Checksum c = Checksum.forId(fields[i].substring(0, eq));
+                        if (fields[i].length() - eq - 1 != c.hexChars) throw new IllegalArgumentException("torn");
+                        hashes.put(c, Digest.fromHex(fields[i], eq + 1, c.hexChars));
+                    }
+                } catch (IllegalArgumentException torn) {
+                    continue;
+                }
+                if (hashes.keySet().containsAll(wanted)) {
+                    hashes.keySet().retainAll(wanted);
+                    recovered.put(fields[0] + ':' + fields[1], new Artifact(fields[1], Collections.unmodifiableMap(hashes), fields[2]));
+                }
+            }
+        } catch (NoSuchFileException ignored) {
+            /* nothing to resume */
+        }
+        return recovered;
+    }
+
+    /** @return the artifact as resolved by the interrupted run, or {@code null} */
+    Artifact recovered(ArtifactId id) {
+        return recovered.get(id.componentKey() + ':' + id.file);
+    }
+
+    int recoveredCount() {
+        return recovered.size();
+    }
+
+    synchronized void append(ArtifactId id, Artifact artifact) throws IOException {
+        out.write(id.componentKey());
+        out.write('\t');
+        out.write(artifact.name);
+        out.write('\t');
+        out.write(artifact.origin);
+        for (Map.Entry<Checksum, Digest> e : artifact.hashes.entrySet()) {
+            out.write('\t');
+            out.write(e.getKey().id);
+            out.write('=');
+            e.getValue().appendHex(out);
+        }
+        out.write('\n');
+        out.flush();
+        dirty = true;
+        if (System.nanoTime() - lastSync >= syncNanos) {
+            sync();
+        }
+    }
+
+    private void sync() throws IOException {
+        channel.force(false);
+        lastSync = System.nanoTime();
+        dirty = false;
+        Metrics.count("journal.syncs");
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel.isOpen()) {
+            try {
+                out.flush();
+                if (dirty) {
+                    sync();
+                }
+            } finally {
+                out.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Supplier;
+
+/**
+ * Defers creating a {@link Fetcher} until the first request. Setting up the {@code HttpClient} backend (its
+ * {@code SSLContext}, selector thread and pool) costs several hundred milliseconds, which a run whose artifacts are all
+ * cached or local never needs to pay.
+ */
+final class LazyFetcher implements Fetcher {
+
+    private final Supplier<Fetcher> factory;
+    private volatile Fetcher delegate;
+
+    LazyFetcher(Supplier<Fetcher> factory) {
+        this.factory = factory;
+    }
+
+    private Fetcher delegate() {
+        Fetcher d = delegate;
+        if (d == null) {
+            synchronized (this) {
+                d = delegate;
+                if (d == null) {
+                    delegate = d = factory.get();
+                }
+            }
+        }
+        return d;
+    }
+
+    @Override
+    public InputStream open(String url, int readTimeoutMillis) throws IOException {
+        return delegate().open(url, readTimeoutMillis);
+    }
+
+    @Override
+    public <T> T fetch(String url, int readTimeoutMillis, BodyReader<T> reader) throws IOException {
+        return delegate().fetch(url, readTimeoutMillis, reader);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (delegate != null) {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Finds artifacts already on disk in Gradle's module cache ({@code files-2.1/<group>/<name>/<version>/<sha1>/<file>})
+ * or a Maven local repository ({@code <group path>/<name>/<version>/<file>}).
+ */
+final class LocalArtifactStore {
+
+    private final Path gradleFiles;
+    private final Path mavenRepo;
+
+    LocalArtifactStore(Path gradleFiles, Path mavenRepo) {
+        this.gradleFiles = gradleFiles;
+        this.mavenRepo = mavenRepo;
+    }
+
+    static LocalArtifactStore none() {
+        return new LocalArtifactStore(null, null);
+    }
+
+    /**
+     * Uses {@code $GRADLE_USER_HOME} (default {@code ~/.gradle}) and {@code maven.repo.local} (default
+     * {@code ~/.m2/repository}). Disabled by {@code -Dverification.local=false}.
+     */
+    static LocalArtifactStore fromSystemProperties() {
+        if ("false".equals(System.getProperty("verification.local"))) {
+            return none();
+        }
+        final String userHome = System.getProperty("user.home");
+        String gradleHome = System.getProperty("gradle.user.home", System.getenv("GRADLE_USER_HOME"));
+        if (gradleHome == null || gradleHome.isEmpty()) {
+            gradleHome = Paths.get(userHome, ".gradle").toString();
+        }
+        final String mavenRepo = System.getProperty("maven.repo.local", Paths.get(userHome, ".m2", "repository").toString());
+        return new LocalArtifactStore(
+                Paths.get(gradleHome, "caches", "modules-2", "files-2.1"),
+                Paths.get(mavenRepo)
+        );
+    }
+
+    /**
+     * @param artifactPath  the artifact's path relative to a repository root, e.g. {@code org/example/lib/1.0/lib-1.0.jar}
+     * @return  the local copy of the artifact, or {@code null} if there is none
+     */
+    Path find(String artifactPath) throws IOException {
+        final int fileSep = artifactPath.lastIndexOf('/');
+        final int versionSep = artifactPath.lastIndexOf('/', fileSep - 1);
+        final int nameSep = artifactPath.lastIndexOf('/', versionSep - 1);
+        if (nameSep <= 0) throw new IllegalArgumentException("bad artifact path: " + artifactPath);
+        final String group = artifactPath.substring(0, nameSep).replace('/', '.');
+        final String name = artifactPath.substring(nameSep + 1, versionSep);
+        final String version = artifactPath.substring(versionSep + 1, fileSep);
+        final String file = artifactPath.substring(fileSep + 1);
+        if (gradleFiles != null) {
+            for (Path hashDir : listDirs(gradleFiles.resolve(group).resolve(name).resolve(version))) {
+                final Path candidate = hashDir.resolve(file);
+                if (Files.isRegularFile(candidate)) {
+                    return candidate;
+                }
+            }
+        }
+        if (mavenRepo != null) {
+            final Path candidate = mavenRepo.resolve(artifactPath);
+            if (Files.isRegularFile(candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static List<Path> listDirs(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return Collections.emptyList();
+        }
+        final List<Path> dirs = new ArrayList<>(2);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, Files::isDirectory)) {
+            stream.forEach(dirs::add);
+        } catch (NoSuchFileException ignored) {
+            /* removed concurrently */
+        }
+        return dirs;
+    }
+}
@@ -0,0 +1,258 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Checks the hashes in an existing {@code verification-metadata.xml} against what the repositories serve now. The
+ * file is streamed, and each artifact is submitted to a {@link ConcurrentResolver} as soon as it has been read. Every
+ * discrepancy is written as one line of JSON, in completion order:
+ * <pre>
+ * {"status": "mismatch", "component": "g:n:v", "artifact": "n-v.jar", "checksum": "sha256", "expected": "..", "actual": "..", "origin": ".."}
+ * </pre>
+ * <ul>
+ * <li>{@code mismatch}: neither the value nor any {@code also-trust} value equals the checksum computed now</li>
+ * <li>{@code missing}: no repository serves the artifact</li>
+ * <li>{@code stale}: the entry has checksums, but none of a configured kind, so it cannot be checked and should be
+ * regenerated; {@code actual} holds the current value</li>
+ * <li>{@code error}: the artifact could not be resolved for some other reason, given in {@code message}</li>
+ * </ul>
+ * Only the configured checksum kinds are compared. Artifacts without any checksums, e.g. those trusted by PGP key
+ * alone, are skipped. Every checksum is fetched from the repositories: neither the checksum cache nor local copies of
+ * artifacts are consulted unless {@code -Dverification.auditTrustsLocal=true}.
+ */
+final class MetadataAuditor {
+
+    enum Status {
+        OK, MISMATCH, MISSING, STALE, ERROR;
+
+        final String id = name().toLowerCase(Locale.ROOT);
+    }
+
+    static final String DEFAULT_REPOSITORIES = GraphWalker.DEFAULT_REPOSITORIES;
+
+    private final Checksum[] checksums;
+    private final List<Repository> repos;
+    private final Writer out;
+    private final int[] counts = new int[Status.values().length]; // guarded by out
+    private int skipped = 0;
+
+    MetadataAuditor(Checksum[] checksums, List<Repository> repos, Writer out) {
+        if (repos.isEmpty()) throw new IllegalArgumentException("no repositories to search");
+        this.checksums = checksums;
+        this.repos = repos;
+        this.out = out;
+    }
+
+    /**
+     * Searches the registry's repositories named in the system property {@code verification.auditRepositories}, a
+     * comma-separated list in search order, default {@value #DEFAULT_REPOSITORIES}. They are probed together.
+     */
+    static MetadataAuditor fromSystemProperties(RepositoryRegistry registry, Writer out) {
+        return new MetadataAuditor(
+                Checksum.fromSystemProperties(),
+                registry.all(System.getProperty("verification.auditRepositories", DEFAULT_REPOSITORIES)),
+                out
+        );
+    }
+
+    /** Blocks until every artifact in the file has been checked. */
+    void audit(Path file, ConcurrentResolver resolver) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            final XMLStreamReader r = MetadataMerger.newReader(in);
+            String group = null, name = null, version = null, artifact = null;
+            EnumMap<Checksum, List<Digest>> trusted = null;
+            List<Digest> values = null; // of the current checksum element
+            boolean inComponents = false;
+            int depth = 0;
+            while (r.hasNext()) {
+                switch (r.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    final String local = r.getLocalName();
+                    if (depth == 1 && "components".equals(local)) {
+                        inComponents = true;
+                    } else if (depth == 2 && inComponents && "component".equals(local)) {
+                        group = MetadataMerger.attr(r, "group");
+                        name = MetadataMerger.attr(r, "name");
+                        version = MetadataMerger.attr(r, "version");
+                    } else if (depth == 3 && group != null && "artifact".equals(local)) {
+                        artifact = MetadataMerger.attr(r, "name");
+                        trusted = new EnumMap<>(Checksum.class);
+                    } else if (depth == 4 && artifact != null) {
+                        final Checksum c = kind(local);
+                        if (c != null) {
+                            values = trusted.computeIfAbsent(c, k -> new ArrayList<>(1));
+                            values.add(digest(r, file));
+                        }
+                    } else if (depth == 5 && values != null && "also-trust".equals(local)) {
+                        values.add(digest(r, file));
+                    }
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    if (depth == 4) {
+                        values = null;
+                    } else if (depth == 3 && artifact != null) {
+                        submit(resolver, new ArtifactId(group, name, version, artifact), trusted);
+                        artifact = null;
+                        trusted = null;
+                    } else if (depth == 2) {
+                        group = name = version = null;
+                    } else if (depth == 1) {
+                        inComponents = false;
+                    }
+                    break;
+                default:
+                }
+            }
+            r.close();
+        } catch (XMLStreamException xse) {
+            throw new IOException(file + ": " + xse.getMessage(), xse);
+        }
+        resolver.awaitAll();
+    }
+
+    private static Checksum kind(String element) {
+        for (Checksum c : Checksum.values()) {
+            if (c.id.equals(element)) {
+                return c;
+            }
+        }
+        return null; // e.g. pgp
+    }
+
+    private static Digest digest(XMLStreamReader r, Path file) throws IOException {
+        final String value = MetadataMerger.attr(r, "value");
+        try {
+            return Digest.fromHex(value, 0, value.length());
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new IOException(file + ":" + r.getLocation().getLineNumber() + ": bad " + r.getLocalName() + " value: " + value, e);
+        }
+    }
+
+    private void submit(ConcurrentResolver resolver, ArtifactId id, Map<Checksum, List<Digest>> trusted) {
+        if (trusted.isEmpty()) {
+            synchronized (out) {
+                skipped++;
+            }
+            return;
+        }
+        resolver.submit(id, repos, (artifact, failure) -> compare(id, trusted, artifact, failure));
+    }
+
+    private void compare(ArtifactId id, Map<Checksum, List<Digest>> trusted, Artifact artifact, IOException failure) throws IOException {
+        if (failure != null) {
+            if (failure instanceof FileNotFoundException) {
+                report(Status.MISSING, id, null, null, null, null, null);
+            } else {
+                report(Status.ERROR, id, null, null, null, null, String.valueOf(failure.getMessage()));
+            }
+            return;
+        }
+        boolean checked = false, ok = true;
+        for (Checksum c : checksums) {
+            final List<Digest> values = trusted.get(c);
+            if (values != null) {
+                checked = true;
+                final Digest actual = artifact.hashes.get(c);
+                if (!values.contains(actual)) {
+                    ok = false;
+                    report(Status.MISMATCH, id, c, values.get(0), actual, artifact.origin, null);
+                }
+            }
+        }
+        if (!checked) {
+            final Checksum strongest = checksums[checksums.length - 1];
+            report(Status.STALE, id, strongest, null, artifact.hashes.get(strongest), artifact.origin, null);
+        } else if (ok) {
+            report(Status.OK, id, null, null, null, null, null);
+        }
+    }
+
+    private void report(Status status, ArtifactId id, Checksum c, Digest expected, Digest actual, String origin, String message) throws IOException {
+        Metrics.count("audit." + status.id);
+        synchronized (out) {
+            counts[status.ordinal()]++;
+            if (status == Status.OK) {
+                return;
+            }
+            out.write("{\"status\": \"" + status.id + "\", \"component\": ");
+            Metrics.string(out, id.componentKey());
+            out.write(", \"artifact\": ");
+            Metrics.string(out, id.file);
+            if (c != null) {
+                out.write(", \"checksum\": \"" + c.id + '"');
+            }
+            if (expected != null) {
+                out.write(", \"expected\": \"");
+                expected.appendHex(out);
+                out.write('"');
+            }
+            if (actual != null) {
+                out.write(", \"actual\": \"");
+                actual.appendHex(out);
+                out.write('"');
+            }
+            if (origin != null) {
+                out.write(", \"origin\": ");
+                Metrics.string(out, origin);
+            }
+            if (message != null) {
+                out.write(", \"message\": ");
+                Metrics.string(out, message);
+            }
+            out.write("}\n");
+        }
+    }
+
+    /** @return whether every artifact checked matched */
+    boolean clean() {
+        synchronized (out) {
+            for (Status s : Status.values()) {
+                if (s != Status.OK && counts[s.ordinal()] != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    @Override
+    public String toString() {
+        synchronized (out) {
+            final StringBuilder sb = new StringBuilder("audit:");
+            for (Status s : Status.values()) {
+                sb.append(' ').append(counts[s.ordinal()]).append(' ').append(s.id).append(',');
+            }
+            return sb.append(' ').append(skipped).append(" skipped").toString();
+        }
+    }
+}
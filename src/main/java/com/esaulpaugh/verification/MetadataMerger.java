@@ -0,0 +1,370 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Merges newly resolved components into an existing Gradle {@code verification-metadata.xml} without loading it into
+ * memory. {@link #index(Path)} scans the file once for the artifacts it already lists. {@link #merge(Collection)}
+ * streams it a second time into a temporary file, copying everything through and inserting new components and
+ * artifacts at their sorted positions, then replaces the original.
+ */
+final class MetadataMerger {
+
+    private static final String COMPONENTS = "components";
+    private static final String COMPONENT = "component";
+    private static final String ARTIFACT = "artifact";
+
+    private final Path file;
+    private final Map<String, Set<String>> existing; // component key -> artifact names
+
+    private MetadataMerger(Path file, Map<String, Set<String>> existing) {
+        this.file = file;
+        this.existing = existing;
+    }
+
+    static MetadataMerger index(Path file) throws IOException {
+        final Map<String, Set<String>> existing = new HashMap<>(1024);
+        try (InputStream in = Files.newInputStream(file)) {
+            final XMLStreamReader r = newReader(in);
+            Set<String> current = null;
+            boolean inComponents = false;
+            int depth = 0;
+            while (r.hasNext()) {
+                switch (r.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    final String local = r.getLocalName();
+                    if (depth == 1 && COMPONENTS.equals(local)) {
+                        inComponents = true;
+                    } else if (depth == 2 && inComponents && COMPONENT.equals(local)) {
+                        current = existing.computeIfAbsent(
+                                attr(r, "group") + ':' + attr(r, "name") + ':' + attr(r, "version"),
+                                k -> new HashSet<>(4)
+                        );
+                    } else if (depth == 3 && current != null && ARTIFACT.equals(local)) {
+                        current.add(attr(r, "name"));
+                    }
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    if (depth == 2) current = null;
+                    else if (depth == 1) inComponents = false;
+                    break;
+                default:
+                }
+            }
+            r.close();
+        } catch (XMLStreamException xse) {
+            throw new IOException(file + ": " + xse.getMessage(), xse);
+        }
+        return new MetadataMerger(file, existing);
+    }
+
+    boolean contains(ArtifactId id) {
+        final Set<String> artifacts = existing.get(id.componentKey());
+        return artifacts != null && artifacts.contains(id.file);
+    }
+
+    int componentCount() {
+        return existing.size();
+    }
+
+    void merge(Collection<Component> additions) throws IOException {
+        final List<Component> pending = new ArrayList<>(additions);
+        pending.sort(Component.ORDER);
+        final Path dir = file.toAbsolutePath().getParent();
+        final Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            try {
+                Files.setPosixFilePermissions(tmp, Files.getPosixFilePermissions(file)); // not the temp file's 0600
+            } catch (UnsupportedOperationException notPosix) {
+                // e.g. on Windows, where the temp file inherits the directory's ACL like the original did
+            }
+            try (InputStream in = Files.newInputStream(file)) {
+                final XMLStreamReader r = newReader(in);
+                try (Writer out = Files.newBufferedWriter(tmp, charset(r))) { // characters it cannot encode fail the merge
+                    new Pass(r, out, pending).run();
+                }
+                r.close();
+            } catch (XMLStreamException xse) {
+                throw new IOException(file + ": " + xse.getMessage(), xse);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /** @return the encoding the document declares, which is echoed back, else the one detected, else UTF-8 */
+    private static Charset charset(XMLStreamReader r) throws IOException {
+        String name = r.getCharacterEncodingScheme();
+        if (name == null) {
+            name = r.getEncoding();
+        }
+        if (name == null) {
+            return StandardCharsets.UTF_8;
+        }
+        try {
+            return Charset.forName(name);
+        } catch (IllegalArgumentException unsupported) {
+            throw new IOException("unsupported encoding: " + name, unsupported);
+        }
+    }
+
+    static XMLStreamReader newReader(InputStream in) throws XMLStreamException {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory.createXMLStreamReader(in);
+    }
+
+    static String attr(XMLStreamReader r, String name) {
+        return r.getAttributeValue(null, name);
+    }
+
+    private static int compare(Component c, String group, String name, String version) {
+        int cmp = c.group.compareTo(group);
+        if (cmp != 0) return cmp;
+        cmp = c.name.compareTo(name);
+        return cmp != 0 ? cmp : c.version.compareTo(version);
+    }
+
+    /** One copy of the document. Whitespace is held back so that insertions land before the indentation of the next tag. */
+    private static final class Pass {
+
+        private final XMLStreamReader r;
+        private final Writer out;
+        private final List<Component> pending;
+        private final StringBuilder heldWhitespace = new StringBuilder();
+        private String indentUnit = null;
+        private int nextComponent = 0;
+        private List<Artifact> pendingArtifacts = Collections.emptyList();
+        private int nextArtifact = 0;
+        private int depth = 0;
+        private boolean inComponents = false;
+        private boolean sawComponents = false;
+        private boolean startTagOpen = false;
+        private boolean inserted = false;
+
+        Pass(XMLStreamReader r, Writer out, List<Component> pending) {
+            this.r = r;
+            this.out = out;
+            this.pending = pending;
+        }
+
+        void run() throws XMLStreamException, IOException {
+            if (r.getVersion() != null) {
+                out.write("<?xml version=\"" + r.getVersion() + '"');
+                if (r.getCharacterEncodingScheme() != null) {
+                    out.write(" encoding=\"" + r.getCharacterEncodingScheme() + '"');
+                }
+                if (r.standaloneSet()) {
+                    out.write(" standalone=\"" + (r.isStandalone() ? "yes" : "no") + '"');
+                }
+                out.write("?>\n");
+            }
+            while (r.hasNext()) {
+                switch (r.next()) {
+                case XMLStreamConstants.START_ELEMENT: startElement(); break;
+                case XMLStreamConstants.END_ELEMENT: endElement(); break;
+                case XMLStreamConstants.SPACE:
+                case XMLStreamConstants.CHARACTERS: characters(); break;
+                case XMLStreamConstants.CDATA: writeOther("<![CDATA[" + r.getText() + "]]>"); break;
+                case XMLStreamConstants.COMMENT: writeOther("<!--" + r.getText() + "-->"); break;
+                case XMLStreamConstants.PROCESSING_INSTRUCTION: writeOther("<?" + r.getPITarget() + (r.getPIData() == null ? "" : " " + r.getPIData()) + "?>"); break;
+                case XMLStreamConstants.DTD: writeOther(r.getText()); break;
+                default:
+                }
+            }
+        }
+
+        private void startElement() throws IOException {
+            final String local = r.getLocalName();
+            if (depth == 1 && indentUnit == null) {
+                final int nl = heldWhitespace.lastIndexOf("\n");
+                indentUnit = heldWhitespace.substring(nl + 1);
+            }
+            if (depth == 2 && inComponents && COMPONENT.equals(local)) {
+                final String group = attr(r, "group"), name = attr(r, "name"), version = attr(r, "version");
+                while (nextComponent < pending.size() && compare(pending.get(nextComponent), group, name, version) < 0) {
+                    insert(componentXml(pending.get(nextComponent++)));
+                }
+                if (nextComponent < pending.size() && compare(pending.get(nextComponent), group, name, version) == 0) {
+                    pendingArtifacts = new ArrayList<>(pending.get(nextComponent++).artifacts);
+                    pendingArtifacts.sort(Artifact.ORDER);
+                    nextArtifact = 0;
+                }
+            } else if (depth == 3 && nextArtifact < pendingArtifacts.size() && ARTIFACT.equals(local)) {
+                final String name = attr(r, "name");
+                while (nextArtifact < pendingArtifacts.size() && pendingArtifacts.get(nextArtifact).name.compareTo(name) < 0) {
+                    insert(artifactXml(pendingArtifacts.get(nextArtifact++), 3));
+                }
+            } else if (depth == 1 && COMPONENTS.equals(local)) {
+                inComponents = sawComponents = true;
+            }
+            closeStartTag();
+            flushWhitespace();
+            out.write('<');
+            out.write(qName(r.getPrefix(), local));
+            for (int i = 0; i < r.getNamespaceCount(); i++) {
+                final String prefix = r.getNamespacePrefix(i);
+                out.write(prefix == null || prefix.isEmpty() ? " xmlns" : " xmlns:" + prefix);
+                out.write("=\"");
+                ComponentWriter.escapeAttribute(r.getNamespaceURI(i), out);
+                out.write('"');
+            }
+            for (int i = 0; i < r.getAttributeCount(); i++) {
+                out.write(' ' + qName(r.getAttributePrefix(i), r.getAttributeLocalName(i)) + "=\"");
+                ComponentWriter.escapeAttribute(r.getAttributeValue(i), out);
+                out.write('"');
+            }
+            startTagOpen = true;
+            inserted = false;
+            depth++;
+        }
+
+        private void endElement() throws IOException {
+            depth--;
+            final String local = r.getLocalName();
+            if (depth == 2 && inComponents && COMPONENT.equals(local)) {
+                while (nextArtifact < pendingArtifacts.size()) {
+                    insert(artifactXml(pendingArtifacts.get(nextArtifact++), 3));
+                }
+                pendingArtifacts = Collections.emptyList();
+            } else if (depth == 1 && COMPONENTS.equals(local)) {
+                while (nextComponent < pending.size()) {
+                    insert(componentXml(pending.get(nextComponent++)));
+                }
+                inComponents = false;
+            } else if (depth == 0 && !sawComponents && nextComponent < pending.size()) {
+                final StringBuilder sb = new StringBuilder("\n").append(indent(1)).append('<').append(COMPONENTS).append('>');
+                while (nextComponent < pending.size()) {
+                    sb.append(componentXml(pending.get(nextComponent++)));
+                }
+                insert(sb.append('\n').append(indent(1)).append("</").append(COMPONENTS).append('>').toString());
+            }
+            if (startTagOpen) {
+                out.write("/>");
+                startTagOpen = false;
+            } else {
+                if (inserted && heldWhitespace.length() == 0) {
+                    heldWhitespace.append('\n').append(indent(depth));
+                }
+                flushWhitespace();
+                out.write("</" + qName(r.getPrefix(), local) + '>');
+            }
+            inserted = false;
+            if (depth == 0) {
+                out.write('\n');
+            }
+        }
+
+        private void characters() throws IOException {
+            closeStartTag();
+            if (r.isWhiteSpace()) {
+                heldWhitespace.append(r.getTextCharacters(), r.getTextStart(), r.getTextLength());
+            } else {
+                flushWhitespace();
+                out.write(escapeText(r.getText()));
+            }
+        }
+
+        private void writeOther(String text) throws IOException {
+            closeStartTag();
+            flushWhitespace();
+            out.write(text);
+            if (depth == 0) {
+                out.write('\n');
+            }
+        }
+
+        private void insert(String xml) throws IOException {
+            closeStartTag();
+            out.write(xml);
+            inserted = true;
+        }
+
+        private void closeStartTag() throws IOException {
+            if (startTagOpen) {
+                out.write('>');
+                startTagOpen = false;
+                inserted = false;
+            }
+        }
+
+        private void flushWhitespace() throws IOException {
+            if (heldWhitespace.length() > 0) {
+                out.append(heldWhitespace);
+                heldWhitespace.setLength(0);
+            }
+        }
+
+        private String indent(int levels) {
+            final String unit = unit();
+            final StringBuilder sb = new StringBuilder(unit.length() * levels);
+            for (int i = 0; i < levels; i++) {
+                sb.append(unit);
+            }
+            return sb.toString();
+        }
+
+        private String componentXml(Component c) {
+            return inserted(ComponentWriter.render(c, unit(), 2));
+        }
+
+        private String artifactXml(Artifact a, int level) {
+            return inserted(ComponentWriter.render(a, unit(), level));
+        }
+
+        private String unit() {
+            return indentUnit != null ? indentUnit : "   ";
+        }
+
+        /** Moves the rendered element's line break from the end to the start, where insertions expect it. */
+        private static String inserted(String rendered) {
+            return '\n' + rendered.substring(0, rendered.length() - 1);
+        }
+    }
+
+    private static String qName(String prefix, String local) {
+        return prefix == null || prefix.isEmpty() ? local : prefix + ':' + local;
+    }
+
+    private static String escapeText(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
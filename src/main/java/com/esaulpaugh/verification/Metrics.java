@@ -0,0 +1,155 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Run-wide counters, latency histograms and phase timings. Names are dotted paths, e.g. {@code fetch.latency.<host>}.
+ * Latencies are recorded in microseconds. {@link #summary()} is printed to stderr at the end of a run; the full set is
+ * written as JSON to the file named by {@code -Dverification.metrics}.
+ */
+final class Metrics {
+
+    private Metrics() {}
+
+    private static final ConcurrentHashMap<String, LongAdder> COUNTERS = new ConcurrentHashMap<>(64);
+    private static final ConcurrentHashMap<String, Histogram> HISTOGRAMS = new ConcurrentHashMap<>(16);
+    private static final ConcurrentSkipListMap<String, Long> PHASES = new ConcurrentSkipListMap<>(); // name -> nanos
+
+    static void count(String name) {
+        count(name, 1L);
+    }
+
+    static void count(String name, long delta) {
+        COUNTERS.computeIfAbsent(name, k -> new LongAdder()).add(delta);
+    }
+
+    static long counter(String name) {
+        final LongAdder adder = COUNTERS.get(name);
+        return adder != null ? adder.sum() : 0L;
+    }
+
+    static void recordNanos(String histogram, long nanos) {
+        HISTOGRAMS.computeIfAbsent(histogram, k -> new Histogram()).record(nanos / 1_000L);
+    }
+
+    /** Records the time since {@code startNanos} as the duration of the phase. */
+    static void phase(String name, long startNanos) {
+        PHASES.put(name, System.nanoTime() - startNanos);
+    }
+
+    /** @return bytes per second, from the counters {@code <prefix>.bytes} and {@code <prefix>.nanos} */
+    static double throughput(String prefix) {
+        final long nanos = counter(prefix + ".nanos");
+        return nanos == 0 ? 0.0 : counter(prefix + ".bytes") * 1e9 / nanos;
+    }
+
+    /** Discards everything recorded so far. */
+    static void reset() {
+        COUNTERS.clear();
+        HISTOGRAMS.clear();
+        PHASES.clear();
+    }
+
+    static String summary() {
+        final StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Long> e : PHASES.entrySet()) {
+            sb.append(String.format(Locale.ROOT, "%-24s %,10.1f ms%n", e.getKey(), e.getValue() / 1e6));
+        }
+        for (Map.Entry<String, Histogram> e : new TreeMap<>(HISTOGRAMS).entrySet()) {
+            final Histogram h = e.getValue();
+            sb.append(String.format(Locale.ROOT, "%-24s n=%d p50=%.1fms p99=%.1fms max=%.1fms%n",
+                    e.getKey(), h.count(), h.percentile(50) / 1e3, h.percentile(99) / 1e3, h.max() / 1e3));
+        }
+        sb.append(String.format(Locale.ROOT, "hashing: %.1f MB/s local, %.1f MB/s downloaded",
+                throughput("hash.local") / 1e6, throughput("hash.download") / 1e6));
+        return sb.toString();
+    }
+
+    /** Writes the JSON summary if {@code -Dverification.metrics} names a file. */
+    static void exportFromSystemProperties() throws IOException {
+        final String file = System.getProperty("verification.metrics");
+        if (file != null) {
+            final Path path = Paths.get(file);
+            try (Writer w = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+                writeJson(w);
+            }
+        }
+    }
+
+    static void writeJson(Writer w) throws IOException {
+        w.write("{\n  \"phasesMillis\": {");
+        String sep = "\n    ";
+        for (Map.Entry<String, Long> e : PHASES.entrySet()) {
+            w.write(sep);
+            string(w, e.getKey());
+            w.write(": " + String.format(Locale.ROOT, "%.3f", e.getValue() / 1e6));
+            sep = ",\n    ";
+        }
+        w.write("\n  },\n  \"counters\": {");
+        sep = "\n    ";
+        for (Map.Entry<String, LongAdder> e : new TreeMap<>(COUNTERS).entrySet()) {
+            w.write(sep);
+            string(w, e.getKey());
+            w.write(": " + e.getValue().sum());
+            sep = ",\n    ";
+        }
+        w.write("\n  },\n  \"histogramsMicros\": {");
+        sep = "\n    ";
+        for (Map.Entry<String, Histogram> e : new TreeMap<>(HISTOGRAMS).entrySet()) {
+            final Histogram h = e.getValue();
+            w.write(sep);
+            string(w, e.getKey());
+            w.write(": {\"count\": " + h.count()
+                    + ", \"mean\": " + String.format(Locale.ROOT, "%.1f", h.mean())
+                    + ", \"p50\": " + h.percentile(50)
+                    + ", \"p90\": " + h.percentile(90)
+                    + ", \"p99\": " + h.percentile(99)
+                    + ", \"max\": " + h.max() + '}');
+            sep = ",\n    ";
+        }
+        w.write("\n  },\n  \"bytesPerSecond\": {\"hash.local\": " + String.format(Locale.ROOT, "%.0f", throughput("hash.local"))
+                + ", \"hash.download\": " + String.format(Locale.ROOT, "%.0f", throughput("hash.download")) + "}\n}\n");
+    }
+
+    static void string(Writer w, String s) throws IOException {
+        w.write('"');
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                w.write('\\');
+                w.write(c);
+            } else if (c < 0x20) {
+                w.write(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                w.write(c);
+            }
+        }
+        w.write('"');
+    }
+}
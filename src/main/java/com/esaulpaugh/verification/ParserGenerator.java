@@ -15,22 +15,21 @@
 */
 package com.esaulpaugh.verification;
 
-import com.esaulpaugh.headlong.util.FastHex;
-
-import javax.net.ssl.HttpsURLConnection;
-import java.io.BufferedInputStream;
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.io.StringReader;
-import java.net.URL;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class ParserGenerator {
 
@@ -511,148 +510,194 @@ public class ParserGenerator {
             "  - jmh-generator-reflection-1.29-sources.jar (org.openjdk.jmh:jmh-generator-reflection:1.29) from repository MavenRepo\n" +
             "  - jopt-simple-4.6-sources.jar (net.sf.jopt-simple:jopt-simple:4.6) from repository MavenRepo";
 
-    private static final String MAVEN_CENTRAL_URL = "https://repo.maven.apache.org/maven2/";
-    private static final String GOOGLE_URL = "https://dl.google.com/dl/android/maven2/";
-    private static final String GRADLE_URL = "https://plugins.gradle.org/m2/";
-
-    private static final String MAVEN_ORIGIN = MAVEN_CENTRAL_URL.replace("https://", "");
-    private static final String GOOGLE_ORIGIN = GOOGLE_URL.replace("https://", "");
-    private static final String GRADLE_ORIGIN = GRADLE_URL.replace("https://", "");
-
-    private static final int DIGEST_LEN_BITS = 256;
-    private static final int DIGEST_LEN_BYTES = DIGEST_LEN_BITS / Byte.SIZE;
-    private static final int DIGEST_HEX_CHARS = DIGEST_LEN_BITS / FastHex.BITS_PER_CHAR;
-    private static final String DIGEST_ALGORITHM = "SHA-" + DIGEST_LEN_BITS;
-
-    public static void main(String[] args0) throws IOException, NoSuchAlgorithmException {
+    /**
+     * @param args0 {@code [--merge <verification-metadata.xml>] [--sorted] [--graph <group:name:version>]...
+     *              [<report> | -]} where {@code <report>} is a file containing the failure report and {@code "-"} reads
+     *              it from standard input; if absent, {@link #ONE} is used. With {@code --graph}, no report is read;
+     *              instead the dependency graphs below the given coordinates are walked (see {@link GraphWalker}).
+     *              Components are printed as soon as all their artifacts resolve, or all at the end in
+     *              group/name/version order with {@code --sorted}. With {@code --merge}, artifacts already listed in
+     *              the metadata file are skipped and the new ones are merged into it in place instead.
+     *              With {@code --journal <file>}, resolved artifacts are logged to the file as they resolve, and with
+     *              {@code --resume} as well, those logged by an earlier, failed run are not resolved again (see
+     *              {@link Journal}). The journal is deleted once the output is written.
+     *              {@code --audit <verification-metadata.xml>} instead checks the hashes already in the file and
+     *              prints the discrepancies (see {@link MetadataAuditor}), exiting with status 1 if there are any.
+     *              {@code --daemon <port>} serves reports until killed (see {@link Daemon}), and
+     *              {@code --connect <port>} sends the report to such a daemon rather than resolving it in-process.
+     */
+    public static void main(String[] args0) throws IOException {
+        final long start = System.nanoTime();
+        String reportArg = null;
+        Path metadataFile = null;
+        Path auditFile = null;
+        Path journalFile = null;
+        int daemonPort = -1;
+        int connectPort = -1;
+        boolean resume = false;
+        boolean sorted = false;
+        final List<String> graphRoots = new ArrayList<>();
+        for (int i = 0; i < args0.length; i++) {
+            if ("--merge".equals(args0[i]) && i + 1 < args0.length) {
+                metadataFile = Paths.get(args0[++i]);
+            } else if ("--audit".equals(args0[i]) && i + 1 < args0.length) {
+                auditFile = Paths.get(args0[++i]);
+            } else if ("--journal".equals(args0[i]) && i + 1 < args0.length) {
+                journalFile = Paths.get(args0[++i]);
+            } else if ("--resume".equals(args0[i])) {
+                resume = true;
+            } else if ("--daemon".equals(args0[i]) && i + 1 < args0.length) {
+                daemonPort = Integer.parseInt(args0[++i]);
+            } else if ("--connect".equals(args0[i]) && i + 1 < args0.length) {
+                connectPort = Integer.parseInt(args0[++i]);
+            } else if ("--sorted".equals(args0[i])) {
+                sorted = true;
+            } else if ("--graph".equals(args0[i]) && i + 1 < args0.length) {
+                graphRoots.add(args0[++i]);
+            } else {
+                reportArg = args0[i];
+            }
+        }
+        if (connectPort >= 0) {
+            final boolean ok;
+            try (Reader report = openReport(reportArg)) {
+                ok = Daemon.request(connectPort, Daemon.tokenFile(connectPort), report, new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+            }
+            if (!ok) {
+                System.exit(1);
+            }
+            return;
+        }
+        final RepositoryRegistry registry = RepositoryRegistry.fromSystemProperties();
+        if (daemonPort >= 0) {
+            final Daemon daemon = Daemon.fromSystemProperties(daemonPort, registry);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    daemon.close(); // flushes the checksum caches
+                } catch (IOException ioe) {
+                    System.err.println(ioe);
+                }
+            }));
+            daemon.serve();
+            return;
+        }
+        if (auditFile != null) {
+            if (!audit(auditFile, registry, start)) {
+                System.exit(1);
+            }
+            return;
+        }
+        final MetadataMerger merger = metadataFile != null ? MetadataMerger.index(metadataFile) : null;
         final ConcurrentHashMap<String, Component> components = new ConcurrentHashMap<>(128);
-        try (BufferedReader br = new BufferedReader(new StringReader(ONE))) {
-            final MessageDigest sha256 = newMessageDigest();
-            String line;
-            while((line = br.readLine()) != null) {
-                if(line.indexOf(") from repository MavenRepo") > 0) {
-                    addArtifact(line, MAVEN_CENTRAL_URL, sha256, MAVEN_ORIGIN, components);
-                } else if(line.indexOf(") from repository MavenLocal") > 0) {
-                    addArtifact(line, MAVEN_CENTRAL_URL, sha256, MAVEN_ORIGIN, components);
-                } else if(line.indexOf(") from repository Google") > 0) {
-                    addArtifact(line, GOOGLE_URL, sha256, GOOGLE_ORIGIN, components);
-                } else if(line.indexOf(") from repository Gradle Central Plugin Repository") > 0) {
-                    addArtifact(line, GRADLE_URL, sha256, GRADLE_ORIGIN, components);
-                } else {
-                    System.err.println("skipping " + line);
+        final ComponentWriter xml = new ComponentWriter(
+                new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16),
+                ComponentWriter.DEFAULT_INDENT_UNIT,
+                0
+        );
+        try (Reader report = graphRoots.isEmpty() ? openReport(reportArg) : null;
+             Fetcher fetcher = FetchPolicy.fromSystemProperties(new LazyFetcher(Fetcher::create));
+             HashResolver hashes = HashResolver.fromSystemProperties(fetcher);
+             ConcurrentResolver resolver = ConcurrentResolver.fromSystemProperties(hashes);
+             Journal journal = journalFile != null ? Journal.fromSystemProperties(journalFile, resume) : null) {
+            hashes.newMessageDigests(); // fail fast on bad constants before spinning up workers
+            if (journal != null) {
+                resolver.journalTo(journal);
+                if (resume) {
+                    System.err.println(journal.recoveredCount() + " artifacts recovered from " + journalFile);
                 }
             }
+            if (merger == null && !sorted) {
+                resolver.emitTo(xml::write);
+            }
+            final long inputStart = System.nanoTime();
+            if (graphRoots.isEmpty()) {
+                final FailureReportParser parser = new FailureReportParser(report, System.err);
+                parser.parse((id, repository) -> {
+                    if (merger != null && merger.contains(id)) {
+                        return;
+                    }
+                    final List<Repository> repos = registry.get(repository);
+                    if (repos != null) {
+                        resolver.submit(id, repos, components);
+                    } else {
+                        System.err.println("skipping " + id + " from repository " + repository);
+                    }
+                });
+                Metrics.phase("parse", inputStart);
+                if (parser.malformed() > 0) {
+                    System.err.println(parser.malformed() + " malformed entries");
+                }
+            } else {
+                GraphWalker.fromSystemProperties(registry, fetcher, (id, repos, guessed) -> {
+                    if (merger == null || !merger.contains(id)) {
+                        resolver.submit(id, repos, components, guessed);
+                    }
+                }).walk(graphRoots);
+                Metrics.phase("walk", inputStart);
+            }
+            final long resolveStart = System.nanoTime();
+            resolver.seal(components);
+            resolver.awaitAll();
+            Metrics.phase("resolve.drain", resolveStart); // resolution overlaps the input phase; this is the remainder
+            System.err.println(hashes.stats());
+            hashes.recordCacheMetrics();
         }
-        final StringBuilder sb = new StringBuilder();
-        components.values()
-                .forEach(c -> sb.append(c.toString()));
-        System.out.println(sb);
-    }
-
-    private static MessageDigest newMessageDigest() throws NoSuchAlgorithmException {
-        final MessageDigest md = MessageDigest.getInstance(DIGEST_ALGORITHM);
-        final int len = md.getDigestLength();
-        if (len * FastHex.CHARS_PER_BYTE != DIGEST_HEX_CHARS) throw new Error("bad constants: " + FastHex.CHARS_PER_BYTE + " and " + DIGEST_HEX_CHARS);
-        if (len != DIGEST_LEN_BYTES) throw new Error("bad init: " + len + " != " + DIGEST_LEN_BYTES);
-        return md;
-    }
-
-    private static void addArtifact(String line, String repoUrl, MessageDigest md, String origin, Map<String, Component> components) throws IOException {
-        final String[] parts = line.split("- |:| \\(|\\) ");
-        final int start = parts.length - 5;
-        final String artifactName = parts[start];
-        final String group = parts[start+1];
-        final String name = parts[start+2];
-        final String version = parts[start+3];
-        final String artifactUrl = repoUrl + group.replace('.', '/') + '/' + name + '/' + version + '/' + artifactName;
-        final String componentKey = group + ':' + name + ':' + version;
-        components.computeIfAbsent(componentKey, key -> new Component(group, name, version, new ArrayList<>()))
-                .artifacts.add(new Artifact(artifactName, getHash(artifactUrl, md), origin));
-    }
-
-    private static String getHash(final String artifactUrl, final MessageDigest md) throws IOException {
-        final HttpsURLConnection conn = (HttpsURLConnection) new URL(artifactUrl + ".sha256").openConnection();
-        conn.setConnectTimeout(300);
-        conn.setReadTimeout(250);
-        boolean hashNotFound = false;
-        try (BufferedInputStream bis = new BufferedInputStream(conn.getInputStream())) {
-            return readHash(bis);
-        } catch (FileNotFoundException fnfe) {
-            if (conn.getResponseCode() == 404) {
-                hashNotFound = true;
-                return downloadAndHash(artifactUrl, md);
+        final long outputStart = System.nanoTime();
+        if (merger != null) {
+            merger.merge(components.values());
+            System.err.println("merged " + components.size() + " components into " + metadataFile);
+        } else {
+            if (sorted) {
+                final List<Component> list = new ArrayList<>(components.values());
+                list.sort(Component.ORDER);
+                for (Component c : list) {
+                    xml.write(c);
+                }
             }
-            throw fnfe;
-        } finally {
-            conn.disconnect();
-            System.out.println((hashNotFound ? "HASHED\t\t" : "FOUND HASH\t") + artifactUrl);
+            xml.flush();
         }
-    }
-
-    private static String readHash(InputStream bis) throws IOException {
-        final byte[] buffer = new byte[DIGEST_HEX_CHARS];
-        final int read = bis.read(buffer);
-        if (read != buffer.length) throw new Error("bad read: " + read + " != " + buffer.length);
-        final String hash = new String(buffer, 0, read);
-        if (bis.read(buffer) != -1) throw new Error("not -1");
-        return hash;
-    }
-
-    private static String downloadAndHash(final String artifactUrl, final MessageDigest md) throws IOException {
-        HttpsURLConnection conn = (HttpsURLConnection) new URL(artifactUrl).openConnection();
-        conn.setConnectTimeout(300);
-        conn.setReadTimeout(900);
-        try (BufferedInputStream bis = new BufferedInputStream(conn.getInputStream())) {
-            byte[] buffer = new byte[4096];
-            int read;
-            while ((read = bis.read(buffer)) != -1)
-                md.update(buffer, 0, read);
-            return FastHex.encodeToString(md.digest());
-        } finally {
-            md.reset();
-            conn.disconnect();
+        if (journalFile != null) {
+            Files.deleteIfExists(journalFile);
         }
+        Metrics.phase("output", outputStart);
+        Metrics.phase("total", start);
+        System.err.println(Metrics.summary());
+        Metrics.exportFromSystemProperties();
     }
 
-    private static final class Component {
-        private final String group;
-        private final String name;
-        private final String version;
-        private final List<Artifact> artifacts;
-
-        private Component(String group, String name, String version, List<Artifact> artifacts) {
-            this.group = group;
-            this.name = name;
-            this.version = version;
-            this.artifacts = artifacts;
-        }
-
-        @Override
-        public String toString() {
-            StringBuilder sb = new StringBuilder("<component group=\"" + group + "\" name=\"" + name + "\" version=\"" + version + "\">\n");
-            for (Artifact artifact : artifacts) {
-                sb.append(artifact.toString());
-            }
-            return sb.append("</component>\n").toString();
+    private static boolean audit(Path file, RepositoryRegistry registry, long start) throws IOException {
+        final BufferedWriter out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+        final MetadataAuditor auditor = MetadataAuditor.fromSystemProperties(registry, out);
+        try (Fetcher fetcher = FetchPolicy.fromSystemProperties(new LazyFetcher(Fetcher::create));
+             HashResolver hashes = Boolean.getBoolean("verification.auditTrustsLocal")
+                     ? HashResolver.fromSystemProperties(fetcher)
+                     : HashResolver.remoteOnly(fetcher);
+             ConcurrentResolver resolver = ConcurrentResolver.fromSystemProperties(hashes)) {
+            hashes.newMessageDigests();
+            auditor.audit(file, resolver);
+            System.err.println(hashes.stats());
+            hashes.recordCacheMetrics();
         }
+        out.flush();
+        Metrics.phase("total", start);
+        System.err.println(auditor);
+        System.err.println(Metrics.summary());
+        Metrics.exportFromSystemProperties();
+        return auditor.clean();
     }
 
-    private static final class Artifact {
-        private final String name;
-        private final String hash;
-        private final String origin;
-
-        public Artifact(String name, String hash, String origin) {
-            this.name = name;
-            this.hash = hash;
-            this.origin = origin;
+    private static Reader openReport(String arg) throws IOException {
+        if (arg == null) {
+            return new StringReader(ONE);
         }
+        return new InputStreamReader(
+                "-".equals(arg) ? System.in : Files.newInputStream(Paths.get(arg)),
+                StandardCharsets.UTF_8
+        );
+    }
 
-        @Override
-        public String toString() {
-            return "    <artifact name=\"" + name + "\">\n"
-                 + "        <sha256 value=\"" + hash + "\" origin=\"" + origin + "\"/>\n"
-                 + "    </artifact>\n";
-        }
+    static void addArtifact(ArtifactId id, Artifact artifact, Map<String, Component> components) {
+        components.computeIfAbsent(id.componentKey(), key -> new Component(id.group, id.name, id.version, new CopyOnWriteArrayList<>()))
+                .artifacts.add(artifact);
     }
 }
@@ -0,0 +1,162 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** The parts of a Maven POM, as written and before inheritance or interpolation, that determine its dependency graph. */
+final class Pom {
+
+    static final class Dependency {
+        String groupId;
+        String artifactId;
+        String version;
+        String type;
+        String classifier;
+        String scope;
+        String optional;
+
+        /** @return the key under which {@code <dependencyManagement>} entries apply to dependencies */
+        String managementKey() {
+            return groupId + ':' + artifactId + ':' + (type != null ? type : "jar") + ':' + (classifier != null ? classifier : "");
+        }
+    }
+
+    private static final String PROJECT = "/project";
+    private static final String PARENT = "/project/parent/";
+    private static final String PROPERTIES = "/project/properties/";
+    private static final String DEPENDENCY = "/project/dependencies/dependency";
+    private static final String MANAGED_DEPENDENCY = "/project/dependencyManagement/dependencies/dependency";
+    private static final String RELOCATION = "/project/distributionManagement/relocation";
+
+    String groupId;
+    String artifactId;
+    String version;
+    String packaging;
+    String parentGroupId;
+    String parentArtifactId;
+    String parentVersion;
+    /** where the module has moved, from {@code <relocation>}; elements left out keep the module's own values */
+    String relocationGroupId;
+    String relocationArtifactId;
+    String relocationVersion;
+    /** whether Gradle published a {@code .module} file alongside, as announced by a marker comment */
+    boolean gradleMetadata = false;
+    final Map<String, String> properties = new HashMap<>();
+    final List<Dependency> managed = new ArrayList<>();
+    final List<Dependency> dependencies = new ArrayList<>();
+
+    static Pom parse(InputStream in, String source) throws IOException {
+        final Pom pom = new Pom();
+        try {
+            final XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+            final XMLStreamReader r = factory.createXMLStreamReader(in);
+            String path = "";
+            Dependency dep = null;
+            while (r.hasNext()) {
+                switch (r.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    path = path + '/' + r.getLocalName();
+                    if (DEPENDENCY.equals(path) || MANAGED_DEPENDENCY.equals(path)) {
+                        dep = new Dependency();
+                    } else if (path.startsWith(PROPERTIES) && path.indexOf('/', PROPERTIES.length()) < 0) {
+                        pom.properties.put(r.getLocalName(), r.getElementText().trim());
+                        path = path.substring(0, path.lastIndexOf('/'));
+                    } else if (pom.leaf(path, dep, r)) {
+                        path = path.substring(0, path.lastIndexOf('/')); // getElementText consumed the end tag
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (DEPENDENCY.equals(path)) {
+                        pom.dependencies.add(dep);
+                        dep = null;
+                    } else if (MANAGED_DEPENDENCY.equals(path)) {
+                        pom.managed.add(dep);
+                        dep = null;
+                    }
+                    path = path.substring(0, path.lastIndexOf('/'));
+                    break;
+                case XMLStreamConstants.COMMENT:
+                    if (r.getText().contains("published-with-gradle-metadata")) {
+                        pom.gradleMetadata = true;
+                    }
+                    break;
+                default:
+                }
+            }
+            r.close();
+        } catch (XMLStreamException xse) {
+            throw new IOException(source + ": " + xse.getMessage(), xse);
+        }
+        return pom;
+    }
+
+    /** Reads the element's text into the field the path names, if any. @return whether it did */
+    private boolean leaf(String path, Dependency dep, XMLStreamReader r) throws XMLStreamException {
+        final int slash = path.lastIndexOf('/');
+        final String parentPath = path.substring(0, slash);
+        final String name = path.substring(slash + 1);
+        if (PROJECT.equals(parentPath)) {
+            switch (name) {
+            case "groupId": groupId = r.getElementText().trim(); return true;
+            case "artifactId": artifactId = r.getElementText().trim(); return true;
+            case "version": version = r.getElementText().trim(); return true;
+            case "packaging": packaging = r.getElementText().trim(); return true;
+            default: return false;
+            }
+        }
+        if (path.startsWith(PARENT)) {
+            switch (name) {
+            case "groupId": parentGroupId = r.getElementText().trim(); return true;
+            case "artifactId": parentArtifactId = r.getElementText().trim(); return true;
+            case "version": parentVersion = r.getElementText().trim(); return true;
+            default: return false;
+            }
+        }
+        if (RELOCATION.equals(parentPath)) {
+            switch (name) {
+            case "groupId": relocationGroupId = r.getElementText().trim(); return true;
+            case "artifactId": relocationArtifactId = r.getElementText().trim(); return true;
+            case "version": relocationVersion = r.getElementText().trim(); return true;
+            default: return false;
+            }
+        }
+        if (dep != null && (DEPENDENCY.equals(parentPath) || MANAGED_DEPENDENCY.equals(parentPath))) {
+            switch (name) {
+            case "groupId": dep.groupId = r.getElementText().trim(); return true;
+            case "artifactId": dep.artifactId = r.getElementText().trim(); return true;
+            case "version": dep.version = r.getElementText().trim(); return true;
+            case "type": dep.type = r.getElementText().trim(); return true;
+            case "classifier": dep.classifier = r.getElementText().trim(); return true;
+            case "scope": dep.scope = r.getElementText().trim(); return true;
+            case "optional": dep.optional = r.getElementText().trim(); return true;
+            default: return false;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import java.util.Comparator;
+
+/** A Maven-layout repository, or a mirror of one, that a failure report's repository name resolves to. */
+final class Repository {
+
+    static final Comparator<Repository> PRIORITY = Comparator.comparingInt(r -> r.priority);
+
+    final String url;
+    /** written to the {@code origin} attribute; a mirror normally keeps the label of the repository it mirrors */
+    final String origin;
+    /** lower is preferred: of the repositories that have an artifact, it is resolved from the one of lowest priority */
+    final int priority;
+
+    Repository(String url, String origin, int priority) {
+        if (!url.endsWith("/")) throw new IllegalArgumentException("url must end with '/': " + url);
+        this.url = url;
+        this.origin = origin;
+        this.priority = priority;
+    }
+
+    Repository(String url) {
+        this(url, defaultOrigin(url), 0);
+    }
+
+    static String defaultOrigin(String url) {
+        return url.replaceFirst("^https?://", "");
+    }
+
+    @Override
+    public String toString() {
+        return url;
+    }
+}
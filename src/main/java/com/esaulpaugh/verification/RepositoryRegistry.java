@@ -0,0 +1,144 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps the repository names that appear in failure reports to the repositories to fetch from. A name may map to
+ * several repositories, e.g. an internal mirror and the public repository behind it, which are probed together.
+ * <p>
+ * The registry file has one repository per line:
+ * <pre>
+ * # report name = url [origin=&lt;label&gt;] [priority=&lt;n&gt;]
+ * MavenRepo = https://nexus.example.com/repository/maven-central/ origin=repo.maven.apache.org/maven2/ priority=0
+ * MavenRepo = https://repo.maven.apache.org/maven2/ priority=10
+ * </pre>
+ * The origin defaults to the URL without its scheme and the priority to 0. Repositories of a name are probed in
+ * parallel, but an artifact is resolved from the one of lowest priority that has it. Names listed in the file replace
+ * the built-in entries for those names; other built-in entries remain.
+ */
+final class RepositoryRegistry {
+
+    static final String MAVEN_CENTRAL_URL = "https://repo.maven.apache.org/maven2/";
+    static final String GOOGLE_URL = "https://dl.google.com/dl/android/maven2/";
+    static final String GRADLE_URL = "https://plugins.gradle.org/m2/";
+
+    private final Map<String, List<Repository>> byName;
+
+    private RepositoryRegistry(Map<String, List<Repository>> byName) {
+        this.byName = byName;
+    }
+
+    static RepositoryRegistry defaults() {
+        final Map<String, List<Repository>> byName = new HashMap<>();
+        final List<Repository> central = Collections.singletonList(new Repository(MAVEN_CENTRAL_URL));
+        byName.put("MavenRepo", central);
+        byName.put("MavenLocal", central);
+        byName.put("Google", Collections.singletonList(new Repository(GOOGLE_URL)));
+        byName.put("Gradle Central Plugin Repository", Collections.singletonList(new Repository(GRADLE_URL)));
+        return new RepositoryRegistry(byName);
+    }
+
+    /** The built-in repositories, overridden by the file named by the system property {@code verification.repositories} if set. */
+    static RepositoryRegistry fromSystemProperties() throws IOException {
+        final String file = System.getProperty("verification.repositories");
+        return file == null ? defaults() : defaults().overriddenBy(Paths.get(file));
+    }
+
+    RepositoryRegistry overriddenBy(Path file) throws IOException {
+        final Map<String, List<Repository>> loaded = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNum = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNum++;
+                line = line.trim();
+                if (line.isEmpty() || line.charAt(0) == '#') {
+                    continue;
+                }
+                final int eq = line.indexOf('=');
+                if (eq <= 0) throw new IOException(file + ":" + lineNum + ": expected <report name> = <url>");
+                final String name = line.substring(0, eq).trim();
+                loaded.computeIfAbsent(name, k -> new ArrayList<>()).add(parseRepository(line.substring(eq + 1).trim(), file, lineNum));
+            }
+        }
+        final Map<String, List<Repository>> merged = new HashMap<>(byName);
+        for (Map.Entry<String, List<Repository>> e : loaded.entrySet()) {
+            final List<Repository> repos = e.getValue();
+            repos.sort(Repository.PRIORITY);
+            merged.put(e.getKey(), Collections.unmodifiableList(repos));
+        }
+        return new RepositoryRegistry(merged);
+    }
+
+    private static Repository parseRepository(String spec, Path file, int lineNum) throws IOException {
+        final String[] tokens = spec.split("\\s+");
+        final String url = tokens[0];
+        String origin = Repository.defaultOrigin(url);
+        int priority = 0;
+        try {
+            for (int i = 1; i < tokens.length; i++) {
+                if (tokens[i].startsWith("origin=")) {
+                    origin = tokens[i].substring("origin=".length());
+                } else if (tokens[i].startsWith("priority=")) {
+                    priority = Integer.parseInt(tokens[i].substring("priority=".length()));
+                } else {
+                    throw new IllegalArgumentException("unknown attribute: " + tokens[i]);
+                }
+            }
+            return new Repository(url, origin, priority);
+        } catch (IllegalArgumentException iae) {
+            throw new IOException(file + ":" + lineNum + ": " + iae.getMessage(), iae);
+        }
+    }
+
+    /**
+     * @param names comma-separated names, e.g. {@value GraphWalker#DEFAULT_REPOSITORIES}
+     * @return  the repositories of each name in turn, without duplicates
+     */
+    List<Repository> all(String names) {
+        final List<Repository> all = new ArrayList<>();
+        final Set<String> urls = new HashSet<>();
+        for (String name : names.split(",")) {
+            final List<Repository> repos = get(name.trim());
+            if (repos == null) throw new IllegalArgumentException("unknown repository: " + name);
+            for (Repository repo : repos) {
+                if (urls.add(repo.url)) {
+                    all.add(repo);
+                }
+            }
+        }
+        return all;
+    }
+
+    /** @return the repositories for the name in priority order, or {@code null} if the name is unknown */
+    List<Repository> get(String reportName) {
+        return byName.get(reportName);
+    }
+}
@@ -0,0 +1,221 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Java 11+ backend. A single {@link HttpClient} is shared by all workers so that TLS sessions and HTTP/2
+ * connections to each repository host are reused across requests. On Java 21+ the client dispatches on virtual
+ * threads. Requests block the calling worker, as with {@link UrlConnectionFetcher}, and like it, time out if the
+ * body stalls for longer than the read timeout. Loaded reflectively by {@link Fetcher#create()}.
+ */
+final class HttpClientFetcher implements Fetcher {
+
+    private final ExecutorService executor;
+    private final HttpClient client;
+
+    HttpClientFetcher() {
+        this.executor = newExecutor();
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(CONNECT_TIMEOUT_MILLIS))
+                .executor(executor)
+                .build();
+    }
+
+    private static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException pre21) {
+            return Executors.newCachedThreadPool(r -> {
+                final Thread t = new Thread(r, "http-client");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    @Override
+    public InputStream open(String url, int readTimeoutMillis) throws IOException {
+        final HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMillis(CONNECT_TIMEOUT_MILLIS + readTimeoutMillis)) // until the headers arrive, connect included
+                .GET()
+                .build();
+        final HttpResponse<Flow.Publisher<List<ByteBuffer>>> response;
+        try {
+            response = client.send(request, HttpResponse.BodyHandlers.ofPublisher());
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(url);
+        }
+        final TimedBody body = new TimedBody(url, readTimeoutMillis);
+        response.body().subscribe(body);
+        final int code = response.statusCode();
+        if (code == 404) {
+            body.close();
+            return null;
+        }
+        if (code / 100 != 2) {
+            body.close();
+            throw new HttpStatusException(code, url);
+        }
+        return body;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * A response body whose every read fails with a {@link SocketTimeoutException} if no data arrives within the read
+     * timeout, as {@code HttpURLConnection.setReadTimeout} does. The request timeout alone does not cover the body.
+     * Buffers are requested one list at a time, so at most one is held ahead of the reader.
+     */
+    private static final class TimedBody extends InputStream implements Flow.Subscriber<List<ByteBuffer>> {
+
+        private static final Object END = new Object();
+
+        private final String url;
+        private final long timeoutNanos;
+        private final BlockingQueue<Object> arrivals = new LinkedBlockingQueue<>(); // List<ByteBuffer>, Throwable or END
+        private volatile Flow.Subscription subscription;
+        private Iterator<ByteBuffer> buffers = Collections.emptyIterator();
+        private ByteBuffer current = null;
+        private boolean done = false;
+
+        TimedBody(String url, int readTimeoutMillis) {
+            this.url = url;
+            this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(readTimeoutMillis);
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+            arrivals.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            arrivals.add(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            arrivals.add(END);
+        }
+
+        /** @return whether {@code current} has bytes remaining, {@code false} at the end of the body */
+        @SuppressWarnings("unchecked")
+        private boolean fill() throws IOException {
+            while (current == null || !current.hasRemaining()) {
+                if (buffers.hasNext()) {
+                    current = buffers.next();
+                    continue;
+                }
+                if (done) {
+                    return false;
+                }
+                final Object next;
+                try {
+                    next = arrivals.poll(timeoutNanos, TimeUnit.NANOSECONDS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    close();
+                    throw new InterruptedIOException(url);
+                }
+                if (next == null) {
+                    close();
+                    throw new SocketTimeoutException("read timed out: " + url);
+                }
+                if (next == END) {
+                    done = true;
+                    return false;
+                }
+                if (next instanceof Throwable) {
+                    done = true;
+                    final Throwable t = (Throwable) next;
+                    throw t instanceof IOException ? (IOException) t : new IOException(url, t);
+                }
+                buffers = ((List<ByteBuffer>) next).iterator();
+                subscription.request(1);
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return fill() ? current.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            final int n = Math.min(len, current.remaining());
+            current.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return current != null ? current.remaining() : 0;
+        }
+
+        @Override
+        public void close() {
+            if (!done) {
+                done = true;
+                final Flow.Subscription s = subscription;
+                if (s != null) {
+                    s.cancel();
+                }
+            }
+            current = null;
+            buffers = Collections.emptyIterator();
+            arrivals.clear();
+        }
+    }
+}
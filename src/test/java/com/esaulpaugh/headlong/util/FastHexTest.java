@@ -0,0 +1,109 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.headlong.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class FastHexTest {
+
+    @Test
+    public void roundTrip() {
+        final Random rand = new Random(0L);
+        for (int len = 0; len < 40; len++) {
+            final byte[] bytes = new byte[len];
+            rand.nextBytes(bytes);
+            final String hex = FastHex.encodeToString(bytes);
+            assertEquals(len * FastHex.CHARS_PER_BYTE, hex.length());
+            assertArrayEquals(bytes, FastHex.decode(hex));
+            assertArrayEquals(bytes, FastHex.decode(hex.toUpperCase()));
+            assertArrayEquals(bytes, FastHex.decode(new StringBuilder(hex), 0, hex.length()));
+            final byte[] hexBytes = FastHex.encodeToBytes(bytes);
+            assertArrayEquals(bytes, FastHex.decode(hexBytes, 0, hexBytes.length));
+            assertArrayEquals(bytes, FastHex.decode(ByteBuffer.wrap(hexBytes)));
+            final ByteBuffer direct = ByteBuffer.allocateDirect(hexBytes.length);
+            direct.put(hexBytes);
+            direct.flip();
+            assertArrayEquals(bytes, FastHex.decode(direct));
+            assertEquals(direct.limit(), direct.position());
+        }
+    }
+
+    @Test
+    public void oddLength() {
+        assertThrown("len must be a multiple of two", () -> FastHex.decode("abc"));
+        assertThrown("len must be a multiple of two", () -> FastHex.decode(new byte[] { 'a' }, 0, 1));
+        assertThrown("len must be a multiple of two", () -> FastHex.decode(ByteBuffer.wrap(new byte[] { 'a', 'b', 'c' })));
+    }
+
+    @Test
+    public void illegalChars() {
+        assertThrown("illegal hex val @ 3", () -> FastHex.decode("00a\u0000"));
+        assertThrown("illegal hex val @ 0", () -> FastHex.decode("g0"));
+        assertThrown("illegal hex val @ 1", () -> FastHex.decode("0\u0130")); // above 0xFF
+        assertThrown("illegal hex val @ 2", () -> FastHex.decode(new StringBuilder("00-0"), 0, 4));
+        for (int i = 0; i < 20; i++) { // each position within and after the four-byte blocks
+            final byte[] hex = "00112233445566778899".getBytes(StandardCharsets.US_ASCII);
+            hex[i] = 'x';
+            assertThrown("illegal hex val @ " + i, () -> FastHex.decode(hex, 0, hex.length));
+        }
+        final byte[] hex = "00112233445566778899".getBytes(StandardCharsets.US_ASCII);
+        hex[11] = 'x';
+        assertThrown("illegal hex val @ 11", () -> FastHex.decode(hex, 2, hex.length - 2)); // an index into the array
+    }
+
+    @Test
+    public void everyByteInEveryLane() {
+        for (int i = 0; i < 8; i++) { // each position of one eight-char block
+            for (int b = 0; b < 256; b++) {
+                final byte[] hex = "a0B1c2D3".getBytes(StandardCharsets.US_ASCII);
+                hex[i] = (byte) b;
+                final int nibble = Character.digit((char) b, 16);
+                if (nibble < 0) {
+                    assertThrown("illegal hex val @ " + i, () -> FastHex.decode(hex, 0, hex.length));
+                } else {
+                    final byte[] out = FastHex.decode(hex, 0, hex.length);
+                    final int shift = i % 2 == 0 ? FastHex.BITS_PER_CHAR : 0;
+                    final int other = Character.digit((char) "a0B1c2D3".charAt(i ^ 1), 16)
+                            << (FastHex.BITS_PER_CHAR - shift);
+                    assertEquals((byte) (nibble << shift | other), out[i / 2]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void illegalCharsInBuffers() {
+        final byte[] array = "..00zz".getBytes(StandardCharsets.US_ASCII);
+        final ByteBuffer heap = ByteBuffer.wrap(array, 2, 4).slice();
+        assertThrown("illegal hex val @ 2", () -> FastHex.decode(heap)); // an index into the buffer, not the array
+        final ByteBuffer direct = ByteBuffer.allocateDirect(4);
+        direct.put(new byte[] { '0', '0', '0', 'z' });
+        direct.flip();
+        assertThrown("illegal hex val @ 3", () -> FastHex.decode(direct));
+    }
+
+    private static void assertThrown(String message, Runnable r) {
+        assertEquals(message, assertThrows(IllegalArgumentException.class, r::run).getMessage());
+    }
+}
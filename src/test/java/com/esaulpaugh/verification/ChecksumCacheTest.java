@@ -0,0 +1,66 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class ChecksumCacheTest {
+
+    private static final int HEX_LEN = Checksum.SHA256.hexChars;
+    private static final String URL = "https://repo.maven.apache.org/maven2/g/x/a/1/a-1.jar";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void writtenThroughBeforeClose() throws IOException {
+        final Path file = dir.resolve("sha256.txt");
+        final Digest digest = Digest.of(new byte[Checksum.SHA256.lenBytes]);
+        final ChecksumCache cache = ChecksumCache.open(file, HEX_LEN);
+        try {
+            cache.put(URL, digest);
+            cache.put(URL.replace("/1/a-1", "/1-SNAPSHOT/a-1-SNAPSHOT"), digest);
+            try (ChecksumCache reopened = ChecksumCache.open(file, HEX_LEN)) { // as after the first was killed
+                assertEquals(digest, reopened.get(URL));
+                assertNull(reopened.get(URL.replace("a-1.jar", "a-1.pom")));
+                assertEquals(1, Files.readAllLines(file).size());
+            }
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void tornLinesIgnored() throws IOException {
+        final Path file = dir.resolve("sha256.txt");
+        final String hex = Digest.of(new byte[Checksum.SHA256.lenBytes]).toHex();
+        Files.write(file, (hex + ' ' + URL + '\n' + hex.substring(0, 10)).getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE_NEW);
+        try (ChecksumCache cache = ChecksumCache.open(file, HEX_LEN)) {
+            assertEquals(hex, cache.get(URL).toHex());
+            assertEquals("cache: 1 hits, 0 misses (100.0%), 1 entries", cache.toString());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.EnumSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DaemonTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void requiresToken() throws IOException, InterruptedException {
+        final Path tokenFile = dir.resolve("daemon.token");
+        try (MockRepository repo = new MockRepository(new MockRepository.Profile())) {
+            final Path repositories = Files.write(dir.resolve("repositories.txt"), ("MavenRepo = " + repo.url()).getBytes(StandardCharsets.UTF_8));
+            final RepositoryRegistry registry = RepositoryRegistry.defaults().overriddenBy(repositories);
+            final Fetcher fetcher = new UrlConnectionFetcher();
+            final Daemon daemon = new Daemon(0, tokenFile, registry, fetcher, HashResolverTest.newResolver(), 2, 2);
+            final Thread server = new Thread(() -> {
+                try {
+                    daemon.serve();
+                } catch (IOException ioe) {
+                    throw new AssertionError(ioe);
+                }
+            });
+            server.start();
+            try {
+                if (Files.getFileStore(tokenFile).supportsFileAttributeView("posix")) {
+                    assertEquals(EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE), Files.getPosixFilePermissions(tokenFile));
+                }
+                final String report = "    - lib0-1.0.jar (com.example:lib0:1.0) from repository MavenRepo\n";
+                final StringWriter out = new StringWriter();
+                assertTrue(Daemon.request(daemon.port(), tokenFile, new StringReader(report), out));
+                assertTrue(out.toString().contains("<component group=\"com.example\" name=\"lib0\" version=\"1.0\">"), out.toString());
+
+                final Path forged = Files.write(dir.resolve("forged.token"), new byte[64]);
+                final StringWriter rejected = new StringWriter();
+                try {
+                    assertFalse(Daemon.request(daemon.port(), forged, new StringReader(report), rejected));
+                } catch (IOException reset) {
+                    /* the daemon may close the connection before the client has finished writing */
+                }
+                assertEquals("", rejected.toString());
+            } finally {
+                daemon.close();
+                server.join();
+            }
+            assertFalse(Files.exists(tokenFile));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FailureReportParserTest {
+
+    private static final String REPORT = "> Dependency verification failed for configuration ':compileClasspath':\n" +
+            "  2 artifacts failed verification:\n" +
+            "    - gson-2.8.9.jar (com.google.code.gson:gson:2.8.9) from repository MavenRepo\n" +
+            "\t- gson-2.8.9.pom (com.google.code.gson:gson:2.8.9) from repository MavenRepo\r\n" +
+            "- core-1.7.0.aar (androidx.core:core:1.7.0) from repository Google\n" +
+            "    - broken.jar (no-colons) from repository MavenRepo\n" +
+            "    - broken-1.0.jar (g:n:1.0) from MavenRepo\n" +
+            "    - last-1.0.jar (g.h:last:1.0) from repository Gradle Central Plugin Repository";
+
+    private static final class Entry {
+        final ArtifactId id;
+        final String repository;
+
+        Entry(ArtifactId id, String repository) {
+            this.id = id;
+            this.repository = repository;
+        }
+    }
+
+    @Test
+    public void parse() throws IOException {
+        final ByteArrayOutputStream diagnostics = new ByteArrayOutputStream();
+        final FailureReportParser parser = new FailureReportParser(new StringReader(REPORT), new PrintStream(diagnostics, true, "UTF-8"));
+        final List<Entry> entries = new ArrayList<>();
+        assertEquals(4, parser.parse((id, repository) -> entries.add(new Entry(id, repository))));
+        assertEquals(4, entries.size());
+        assertEntry(entries.get(0), "com.google.code.gson", "gson", "2.8.9", "gson-2.8.9.jar", "MavenRepo");
+        assertEntry(entries.get(1), "com.google.code.gson", "gson", "2.8.9", "gson-2.8.9.pom", "MavenRepo");
+        assertEntry(entries.get(2), "androidx.core", "core", "1.7.0", "core-1.7.0.aar", "Google");
+        assertEntry(entries.get(3), "g.h", "last", "1.0", "last-1.0.jar", "Gradle Central Plugin Repository");
+        assertEquals(2, parser.malformed());
+        final String messages = new String(diagnostics.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(messages.contains("line 6"), messages);
+        assertTrue(messages.contains("line 7"), messages);
+    }
+
+    @Test
+    public void oneArtifact() throws IOException {
+        final ByteArrayOutputStream diagnostics = new ByteArrayOutputStream();
+        final String report = "> Dependency verification failed for configuration ':compileClasspath'\n" +
+                "  One artifact failed verification: gson-2.8.9.jar (com.google.code.gson:gson:2.8.9) from repository MavenRepo\n" +
+                "  If the artifacts are trustworthy, you will need to update the gradle/verification-metadata.xml file.\n";
+        final FailureReportParser parser = new FailureReportParser(new StringReader(report), new PrintStream(diagnostics, true, "UTF-8"));
+        final List<Entry> entries = new ArrayList<>();
+        assertEquals(1, parser.parse((id, repository) -> entries.add(new Entry(id, repository))));
+        assertEntry(entries.get(0), "com.google.code.gson", "gson", "2.8.9", "gson-2.8.9.jar", "MavenRepo");
+        assertEquals(0, parser.malformed());
+        assertEquals(0, diagnostics.size()); // headers and footers are ignored silently
+    }
+
+    @Test
+    public void longLines() throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        final String name = new String(new char[20_000]).replace('\0', 'n');
+        sb.append("    - ").append(name).append("-1.0.jar (g:").append(name).append(":1.0) from repository MavenRepo\n");
+        final List<Entry> entries = new ArrayList<>();
+        new FailureReportParser(new StringReader(sb.toString()), System.err)
+                .parse((id, repository) -> entries.add(new Entry(id, repository)));
+        assertEquals(1, entries.size());
+        assertEntry(entries.get(0), "g", name, "1.0", name + "-1.0.jar", "MavenRepo");
+    }
+
+    private static void assertEntry(Entry e, String group, String name, String version, String file, String repository) {
+        assertEquals(group, e.id.group);
+        assertEquals(name, e.id.name);
+        assertEquals(version, e.id.version);
+        assertEquals(file, e.id.file);
+        assertEquals(repository, e.repository);
+    }
+}
@@ -0,0 +1,157 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FetchPolicyTest {
+
+    private static final String URL = "http://repo.example/a/b/1/b-1.jar";
+
+    private static final Object NOT_FOUND = new Object();
+
+    /** Answers each request with the next scripted response: an exception to throw, {@link #NOT_FOUND}, or a body. */
+    private static final class ScriptedFetcher implements Fetcher {
+
+        private final Deque<Object> script;
+        int requests = 0;
+
+        ScriptedFetcher(Object... responses) {
+            this.script = new ArrayDeque<>(Arrays.asList(responses));
+        }
+
+        @Override
+        public InputStream open(String url, int readTimeoutMillis) throws IOException {
+            requests++;
+            final Object next = script.size() > 1 ? script.poll() : script.peek(); // the last response repeats
+            if (next instanceof IOException) throw (IOException) next;
+            return next != NOT_FOUND ? new ByteArrayInputStream((byte[]) next) : null;
+        }
+
+        @Override
+        public void close() {}
+    }
+
+    private static FetchPolicy policy(Fetcher delegate, int retries, int breakerThreshold, int breakerCooldownMillis) {
+        return new FetchPolicy(delegate, retries, 1_000, breakerThreshold, breakerCooldownMillis);
+    }
+
+    private static int fetchLength(Fetcher fetcher) throws IOException {
+        return fetcher.fetch(URL, 100, is -> {
+            if (is == null) throw new FileNotFoundException(URL);
+            int n = 0;
+            while (is.read() != -1) n++;
+            return n;
+        });
+    }
+
+    @Test
+    public void retriesTransientFailures() throws IOException {
+        final ScriptedFetcher delegate = new ScriptedFetcher(new HttpStatusException(503, URL), new IOException("reset"), new byte[3]);
+        assertEquals(3, fetchLength(policy(delegate, 3, 5, 0)));
+        assertEquals(3, delegate.requests);
+    }
+
+    @Test
+    public void givesUpAfterRetries() {
+        final IOException failure = new HttpStatusException(502, URL);
+        final ScriptedFetcher delegate = new ScriptedFetcher(failure);
+        assertSame(failure, assertThrows(IOException.class, () -> fetchLength(policy(delegate, 2, 5, 0))));
+        assertEquals(3, delegate.requests);
+    }
+
+    @Test
+    public void doesNotRetryAnswers() throws IOException {
+        final ScriptedFetcher notFound = new ScriptedFetcher(NOT_FOUND);
+        assertThrows(FileNotFoundException.class, () -> fetchLength(policy(notFound, 3, 5, 0)));
+        assertEquals(1, notFound.requests);
+
+        final ScriptedFetcher forbidden = new ScriptedFetcher(new HttpStatusException(403, URL));
+        assertThrows(HttpStatusException.class, () -> fetchLength(policy(forbidden, 3, 5, 0)));
+        assertEquals(1, forbidden.requests);
+
+        final ScriptedFetcher body = new ScriptedFetcher(new byte[1]);
+        final FetchPolicy policy = policy(body, 3, 1, 60_000);
+        final Digest expected = Digest.of(new byte[32]);
+        for (int i = 0; i < 3; i++) { // neither retried nor counted against the host
+            assertThrows(ChecksumMismatchException.class, () -> policy.fetch(URL, 100, is -> {
+                throw new ChecksumMismatchException(Checksum.SHA256, URL, expected, Digest.of(new byte[32]));
+            }));
+        }
+        assertEquals(3, body.requests);
+        assertEquals(1, fetchLength(policy));
+    }
+
+    @Test
+    public void breakerOpensAfterExhaustedFailures() throws IOException {
+        final ScriptedFetcher delegate = new ScriptedFetcher(new IOException("timeout"));
+        final FetchPolicy policy = policy(delegate, 0, 2, 60_000);
+        assertEquals("timeout", assertThrows(IOException.class, () -> fetchLength(policy)).getMessage());
+        assertEquals("timeout", assertThrows(IOException.class, () -> fetchLength(policy)).getMessage());
+        final IOException rejected = assertThrows(IOException.class, () -> fetchLength(policy));
+        assertTrue(rejected.getMessage().startsWith("circuit open for repo.example"), rejected.getMessage());
+        assertEquals(2, delegate.requests);
+    }
+
+    @Test
+    public void retriedFailuresDoNotOpenBreaker() throws IOException {
+        final ScriptedFetcher delegate = new ScriptedFetcher(new IOException("timeout"), new byte[2]);
+        final FetchPolicy policy = policy(delegate, 1, 1, 60_000);
+        assertEquals(2, fetchLength(policy));
+        assertEquals(2, fetchLength(policy));
+        assertEquals(3, delegate.requests);
+    }
+
+    @Test
+    public void trialRequestClosesBreaker() throws IOException {
+        final ScriptedFetcher delegate = new ScriptedFetcher(new IOException("timeout"), new byte[4]);
+        final FetchPolicy policy = policy(delegate, 0, 1, 0);
+        assertThrows(IOException.class, () -> fetchLength(policy));
+        assertEquals(4, fetchLength(policy)); // the cooldown has passed; this is the trial
+        assertEquals(4, fetchLength(policy));
+        assertEquals(3, delegate.requests);
+    }
+
+    @Test
+    public void trialReleasedOnRuntimeException() throws IOException {
+        final ScriptedFetcher delegate = new ScriptedFetcher(new IOException("timeout"), new byte[4]);
+        final FetchPolicy policy = policy(delegate, 0, 1, 0);
+        assertThrows(IOException.class, () -> fetchLength(policy));
+        assertThrows(IllegalStateException.class, () -> policy.fetch(URL, 100, is -> {
+            throw new IllegalStateException("bug");
+        }));
+        assertEquals(4, fetchLength(policy)); // not rejected as half-open with a trial in flight
+    }
+
+    @Test
+    public void missingBodyPassedToReader() throws IOException {
+        assertNull(policy(new ScriptedFetcher(NOT_FOUND), 3, 5, 0).fetch(URL, 100, is -> is));
+    }
+}
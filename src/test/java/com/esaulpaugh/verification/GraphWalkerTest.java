@@ -0,0 +1,135 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GraphWalkerTest {
+
+    private static final String REPO = "http://repo.test/";
+
+    /** Serves POMs from memory. */
+    private static final class PomFetcher implements Fetcher {
+
+        private final Map<String, String> poms = new HashMap<>();
+
+        PomFetcher pom(String group, String name, String version, String body) {
+            poms.put(REPO + group.replace('.', '/') + '/' + name + '/' + version + '/' + name + '-' + version + ".pom",
+                    "<project><groupId>" + group + "</groupId><artifactId>" + name + "</artifactId><version>" + version
+                            + "</version>" + body + "</project>");
+            return this;
+        }
+
+        @Override
+        public InputStream open(String url, int readTimeoutMillis) {
+            final String pom = poms.get(url);
+            return pom != null ? new ByteArrayInputStream(pom.getBytes(StandardCharsets.UTF_8)) : null;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /** @return each artifact reported, suffixed with {@code ?} if guessed */
+    private static Set<String> walk(Fetcher fetcher, int parallelism, String... roots) throws IOException {
+        final Set<String> reported = Collections.synchronizedSet(new TreeSet<>());
+        new GraphWalker(
+                Collections.singletonList(Collections.singletonList(new Repository(REPO))),
+                fetcher,
+                (id, repos, guessed) -> reported.add(id.group + ':' + id.file + (guessed ? "?" : "")),
+                parallelism
+        ).walk(Arrays.asList(roots));
+        return reported;
+    }
+
+    private static String dependency(String group, String name, String version, String type) {
+        return "<dependency><groupId>" + group + "</groupId><artifactId>" + name + "</artifactId><version>" + version
+                + "</version>" + (type != null ? "<type>" + type + "</type>" : "") + "</dependency>";
+    }
+
+    @Test
+    public void typesImplyClassifiers() throws IOException {
+        final PomFetcher fetcher = new PomFetcher()
+                .pom("g", "app", "1", "<dependencies>"
+                        + dependency("g", "lib", "1", "test-jar")
+                        + dependency("g", "lib", "1", "java-source")
+                        + dependency("g", "lib", "1", "javadoc")
+                        + dependency("g", "lib", "1", null)
+                        + "</dependencies>")
+                .pom("g", "lib", "1", "");
+        assertEquals(
+                new TreeSet<>(Arrays.asList(
+                        "g:app-1.jar?", "g:app-1.pom",
+                        "g:lib-1-javadoc.jar?", "g:lib-1-sources.jar?", "g:lib-1-tests.jar?", "g:lib-1.jar?", "g:lib-1.pom"
+                )),
+                walk(fetcher, 2, "g:app:1")
+        );
+    }
+
+    @Test
+    public void followsRelocation() throws IOException {
+        final PomFetcher fetcher = new PomFetcher()
+                .pom("old", "lib", "1", "<distributionManagement><relocation><groupId>new</groupId></relocation></distributionManagement>")
+                .pom("new", "lib", "1", "<dependencies>" + dependency("new", "dep", "2", null) + "</dependencies>")
+                .pom("new", "dep", "2", "");
+        assertEquals(
+                new TreeSet<>(Arrays.asList("old:lib-1.pom", "new:lib-1.pom", "new:lib-1.jar?", "new:dep-2.pom", "new:dep-2.jar?")),
+                walk(fetcher, 2, "old:lib:1")
+        );
+    }
+
+    @Test
+    public void parentCycleFails() {
+        final PomFetcher fetcher = new PomFetcher()
+                .pom("g", "a", "1", "<parent><groupId>g</groupId><artifactId>b</artifactId><version>1</version></parent>")
+                .pom("g", "b", "1", "<parent><groupId>g</groupId><artifactId>a</artifactId><version>1</version></parent>");
+        final IOException ioe = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> assertThrows(IOException.class, () -> walk(fetcher, 1, "g:a:1")));
+        assertTrue(ioe.getMessage().startsWith("parent or import cycle through "), ioe.getMessage());
+    }
+
+    @Test
+    public void importCycleAcrossThreadsFails() {
+        final String importA = "<dependencyManagement><dependencies><dependency><groupId>g</groupId><artifactId>bom-a</artifactId>"
+                + "<version>1</version><type>pom</type><scope>import</scope></dependency></dependencies></dependencyManagement>";
+        final String importB = importA.replace("bom-a", "bom-b");
+        final PomFetcher fetcher = new PomFetcher()
+                .pom("g", "bom-a", "1", importB)
+                .pom("g", "bom-b", "1", importA);
+        for (int i = 0; i < 20; i++) {
+            assertTimeoutPreemptively(Duration.ofSeconds(10),
+                    () -> assertThrows(IOException.class, () -> walk(fetcher, 4, "g:bom-a:1", "g:bom-b:1")));
+        }
+    }
+}
@@ -0,0 +1,234 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HashResolverTest {
+
+    private static final String SHA256 = "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855";
+
+    @Test
+    public void readHashFormats() throws IOException {
+        final Digest expected = Digest.fromHex(SHA256, 0, SHA256.length());
+        assertEquals(expected, readHash(SHA256));
+        assertEquals(expected, readHash(SHA256 + "\n"));
+        assertEquals(expected, readHash(SHA256 + "\r\n"));
+        assertEquals(expected, readHash("  " + SHA256 + "  guava-31.1-jre.jar\n")); // sha256sum
+        assertEquals(expected, readHash(SHA256 + " *guava-31.1-jre.jar")); // binary mode
+        assertEquals(expected, readHash(SHA256.toUpperCase()));
+    }
+
+    @Test
+    public void readHashMalformed() {
+        assertMalformed("bad sha256 file: expected 64 hex chars but found 0", "");
+        assertMalformed("bad sha256 file: expected 64 hex chars but found 0", " \n");
+        assertMalformed("bad sha256 file: expected 64 hex chars but found 62", SHA256.substring(2));
+        assertMalformed("bad sha256 file: expected 64 hex chars but found 66", SHA256 + "00\n");
+        assertMalformed("bad sha256 file: illegal hex val @ 0", "zz" + SHA256.substring(2));
+        assertMalformed("bad sha256 file: expected 64 hex chars but found 9", "<!DOCTYPE html>\n<html></html>");
+        final char[] huge = new char[100_000];
+        Arrays.fill(huge, 'a');
+        assertMalformed("bad sha256 file: no digest in the first 512 bytes", new String(huge));
+    }
+
+    private static Digest readHash(String contents) throws IOException {
+        return HashResolver.readHash(new ByteArrayInputStream(contents.getBytes(StandardCharsets.US_ASCII)), Checksum.SHA256);
+    }
+
+    private static void assertMalformed(String message, String contents) {
+        assertEquals(message, assertThrows(IOException.class, () -> readHash(contents)).getMessage());
+    }
+
+    @Test
+    public void notFound() throws IOException {
+        final MockRepository.Profile profile = new MockRepository.Profile();
+        profile.notFoundRatio = 1.0;
+        try (MockRepository repo = new MockRepository(profile);
+             MockRepository other = new MockRepository(profile);
+             HashResolver hashes = newResolver()) {
+            final ArtifactId id = new ArtifactId("g.x", "a", "1", "a-1.jar");
+            assertThrows(FileNotFoundException.class, () -> hashes.resolve(repos(repo), id, hashes.threadDigests()));
+            assertThrows(FileNotFoundException.class, () -> hashes.resolve(repos(repo, other), id, hashes.threadDigests()));
+        }
+    }
+
+    @Test
+    public void someNotFound() throws IOException {
+        final MockRepository.Profile profile = new MockRepository.Profile();
+        profile.notFoundRatio = 0.5;
+        profile.missingSidecarRatio = 0.5;
+        try (MockRepository repo = new MockRepository(profile);
+             HashResolver hashes = newResolver();
+             ConcurrentResolver resolver = new ConcurrentResolver(hashes, 4, 2)) {
+            final List<ArtifactId> ids = ids(64);
+            final ConcurrentHashMap<String, Boolean> found = new ConcurrentHashMap<>();
+            for (ArtifactId id : ids) {
+                resolver.submit(id, repos(repo), (artifact, failure) -> {
+                    if (failure instanceof FileNotFoundException) {
+                        found.put(id.path(), false);
+                    } else if (failure == null) {
+                        assertEquals(repo.expected(id.path(), Checksum.SHA256), artifact.hashes.get(Checksum.SHA256));
+                        found.put(id.path(), true);
+                    } else {
+                        throw failure;
+                    }
+                });
+            }
+            resolver.awaitAll();
+            assertEquals(ids.size(), found.size());
+            for (ArtifactId id : ids) {
+                assertEquals(repo.exists(id.path()), found.get(id.path()), id.toString());
+            }
+        }
+    }
+
+    @Test
+    public void slowBodies() throws IOException {
+        final MockRepository.Profile profile = new MockRepository.Profile();
+        profile.missingSidecarRatio = 1.0; // downloaded and hashed
+        profile.slowBodyRatio = 1.0;
+        profile.slowBytesPerSecond = 64 * 1024;
+        profile.smallBytes = 32 * 1024;
+        try (MockRepository repo = new MockRepository(profile);
+             HashResolver hashes = newResolver()) {
+            for (ArtifactId id : ids(4)) {
+                final Artifact artifact = hashes.resolve(repos(repo), id, hashes.threadDigests());
+                assertEquals(repo.expected(id.path(), Checksum.SHA256), artifact.hashes.get(Checksum.SHA256));
+            }
+        }
+    }
+
+    @Test
+    public void largeBodies() throws IOException {
+        final MockRepository.Profile profile = new MockRepository.Profile();
+        profile.largeRatio = 1.0;
+        profile.largeBytes = 6 * 1024 * 1024 + 3;
+        profile.missingSidecarRatio = 1.0; // downloaded and hashed
+        try (MockRepository repo = new MockRepository(profile);
+             HashResolver hashes = newResolver()) {
+            for (ArtifactId id : ids(4)) {
+                final Artifact artifact = hashes.resolve(repos(repo), id, hashes.threadDigests());
+                assertEquals(repo.expected(id.path(), Checksum.SHA256), artifact.hashes.get(Checksum.SHA256));
+            }
+        }
+    }
+
+    @Test
+    public void cachedAfterResolving() throws IOException {
+        try (MockRepository repo = new MockRepository(new MockRepository.Profile());
+             HashResolver hashes = newResolver()) {
+            final ArtifactId id = ids(1).get(0);
+            final Artifact first = hashes.resolve(repos(repo), id, hashes.threadDigests());
+            final long requests = repo.requests.get();
+            final Artifact second = hashes.resolve(repos(repo), id, hashes.threadDigests());
+            assertEquals(first.hashes, second.hashes);
+            assertEquals(requests, repo.requests.get());
+            assertTrue(hashes.stats().startsWith("sha256 "), hashes.stats());
+        }
+    }
+
+    @Test
+    public void optionalNotFound() throws IOException {
+        final MockRepository.Profile profile = new MockRepository.Profile();
+        profile.notFoundRatio = 1.0;
+        try (MockRepository repo = new MockRepository(profile);
+             HashResolver hashes = newResolver()) {
+            final Map<String, Component> components = new ConcurrentHashMap<>();
+            try (ConcurrentResolver resolver = new ConcurrentResolver(hashes, 4, 2)) {
+                final List<Component> emitted = Collections.synchronizedList(new ArrayList<>());
+                resolver.emitTo(emitted::add);
+                for (ArtifactId id : ids(8)) {
+                    resolver.submit(id, repos(repo), components, true);
+                }
+                resolver.seal(components);
+                resolver.awaitAll();
+                assertTrue(components.isEmpty());
+                assertTrue(emitted.isEmpty());
+            }
+            try (ConcurrentResolver resolver = new ConcurrentResolver(hashes, 4, 2)) {
+                resolver.submit(ids(1).get(0), repos(repo), components, false);
+                assertThrows(FileNotFoundException.class, resolver::awaitAll);
+            }
+        }
+    }
+
+    @Test
+    public void probePrefersPriority() throws IOException {
+        final MockRepository.Profile slow = new MockRepository.Profile();
+        slow.latencyMillis = 150; // within the checksum file timeout
+        try (MockRepository preferred = new MockRepository(slow);
+             MockRepository fallback = new MockRepository(new MockRepository.Profile());
+             HashResolver hashes = newResolver()) {
+            final List<Repository> repos = Arrays.asList(
+                    new Repository(preferred.url(), "preferred", 0),
+                    new Repository(fallback.url(), "fallback", 10)
+            );
+            final ArtifactId id = new ArtifactId("g.x", "a", "1", "a-1.jar");
+            assertEquals("preferred", hashes.resolve(repos, id, hashes.threadDigests()).origin); // though it answers last
+        }
+        final MockRepository.Profile missing = new MockRepository.Profile();
+        missing.notFoundRatio = 1.0;
+        try (MockRepository preferred = new MockRepository(missing);
+             MockRepository fallback = new MockRepository(new MockRepository.Profile());
+             HashResolver hashes = newResolver()) {
+            final List<Repository> repos = Arrays.asList(
+                    new Repository(preferred.url(), "preferred", 0),
+                    new Repository(fallback.url(), "fallback", 10)
+            );
+            final ArtifactId id = new ArtifactId("g.x", "a", "1", "a-1.jar");
+            assertEquals("fallback", hashes.resolve(repos, id, hashes.threadDigests()).origin);
+        }
+    }
+
+    static HashResolver newResolver() {
+        final EnumMap<Checksum, ChecksumCache> caches = new EnumMap<>(Checksum.class);
+        caches.put(Checksum.SHA256, ChecksumCache.inMemory(Checksum.SHA256.hexChars));
+        return new HashResolver(new Checksum[] { Checksum.SHA256 }, new UrlConnectionFetcher(), caches, LocalArtifactStore.none(), true);
+    }
+
+    static List<Repository> repos(MockRepository... mocks) {
+        final List<Repository> repos = new ArrayList<>(mocks.length);
+        for (MockRepository m : mocks) {
+            repos.add(new Repository(m.url(), "mock", repos.size()));
+        }
+        return Collections.unmodifiableList(repos);
+    }
+
+    static List<ArtifactId> ids(int n) {
+        final List<ArtifactId> ids = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            ids.add(new ArtifactId("com.example", "lib" + i, "1.0", "lib" + i + "-1.0.jar"));
+        }
+        return ids;
+    }
+}
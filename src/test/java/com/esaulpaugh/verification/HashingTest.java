@@ -0,0 +1,71 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HashingTest {
+
+    private static final Checksum[] CHECKSUMS = { Checksum.SHA256, Checksum.SHA1, Checksum.SHA512 };
+
+    @Test
+    public void parallelMatchesSequential() throws IOException {
+        final byte[] artifact = new byte[(int) Hashing.PARALLEL_THRESHOLD * 2 + 12345];
+        new Random(7).nextBytes(artifact);
+        final MessageDigest[] mds = new MessageDigest[CHECKSUMS.length];
+        final byte[][] expected = new byte[CHECKSUMS.length][];
+        for (int i = 0; i < mds.length; i++) {
+            mds[i] = CHECKSUMS[i].newMessageDigest();
+            expected[i] = CHECKSUMS[i].newMessageDigest().digest(artifact);
+        }
+        final AtomicInteger helped = new AtomicInteger();
+        final ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            assertEqual(expected, Hashing.digest(new ByteArrayInputStream(artifact), r -> {
+                helped.incrementAndGet();
+                pool.execute(r);
+            }, mds));
+            assertTrue(helped.get() > 0);
+            final int streamed = helped.get();
+            assertEqual(expected, Hashing.digest(Channels.newChannel(new ByteArrayInputStream(artifact)), r -> {
+                helped.incrementAndGet();
+                pool.execute(r);
+            }, mds));
+            assertTrue(helped.get() > streamed);
+            assertEqual(expected, Hashing.digest(new ByteArrayInputStream(artifact), null, mds)); // reset after each
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void assertEqual(byte[][] expected, byte[][] actual) {
+        for (int i = 0; i < expected.length; i++) {
+            assertArrayEquals(expected[i], actual[i], CHECKSUMS[i].id);
+        }
+    }
+}
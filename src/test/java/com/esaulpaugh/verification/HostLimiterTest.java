@@ -0,0 +1,151 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HostLimiterTest {
+
+    private static final Consumer<RejectedExecutionException> UNEXPECTED = ree -> {
+        throw new AssertionError(ree);
+    };
+
+    @Test
+    public void busyHostDoesNotHoldWorkers() throws InterruptedException {
+        final ExecutorService workers = ConcurrentResolver.newExecutor(2);
+        try {
+            final HostLimiter limiter = new HostLimiter(1);
+            final CountDownLatch unblock = new CountDownLatch(1);
+            final CountDownLatch slowDone = new CountDownLatch(3);
+            for (int i = 0; i < 3; i++) {
+                limiter.execute("slow.example", workers, () -> {
+                    await(unblock);
+                    slowDone.countDown();
+                }, UNEXPECTED);
+            }
+            assertEquals(2, limiter.waiting("slow.example"));
+            final CountDownLatch fastDone = new CountDownLatch(4);
+            for (int i = 0; i < 4; i++) {
+                limiter.execute("fast.example", workers, fastDone::countDown, UNEXPECTED);
+            }
+            assertTrue(fastDone.await(10, TimeUnit.SECONDS)); // on the one worker not taken by slow.example
+            unblock.countDown();
+            assertTrue(slowDone.await(10, TimeUnit.SECONDS));
+            assertEquals(0, limiter.waiting("slow.example"));
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void capSharedAcrossCallers() throws InterruptedException {
+        final ExecutorService a = ConcurrentResolver.newExecutor(8);
+        final ExecutorService b = ConcurrentResolver.newExecutor(8);
+        try {
+            final HostLimiter limiter = new HostLimiter(3);
+            final AtomicInteger running = new AtomicInteger();
+            final AtomicInteger max = new AtomicInteger();
+            final CountDownLatch done = new CountDownLatch(64);
+            for (int i = 0; i < 64; i++) {
+                limiter.execute("repo.example", i % 2 == 0 ? a : b, () -> {
+                    max.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    sleep();
+                    running.decrementAndGet();
+                    done.countDown();
+                }, UNEXPECTED);
+            }
+            assertTrue(done.await(30, TimeUnit.SECONDS));
+            assertEquals(3, max.get());
+        } finally {
+            a.shutdownNow();
+            b.shutdownNow();
+        }
+    }
+
+    @Test
+    public void rejectionFreesSlot() throws InterruptedException {
+        final ExecutorService live = ConcurrentResolver.newExecutor(2);
+        final ExecutorService dead = ConcurrentResolver.newExecutor(2);
+        dead.shutdownNow();
+        try {
+            final HostLimiter limiter = new HostLimiter(1);
+            final AtomicInteger rejected = new AtomicInteger();
+            limiter.execute("repo.example", dead, () -> { throw new AssertionError(); }, ree -> rejected.incrementAndGet());
+            assertEquals(1, rejected.get()); // rejected on admission
+
+            final CountDownLatch unblock = new CountDownLatch(1);
+            final CountDownLatch done = new CountDownLatch(2);
+            limiter.execute("repo.example", live, () -> {
+                await(unblock);
+                done.countDown();
+            }, UNEXPECTED);
+            for (int i = 0; i < 3; i++) {
+                limiter.execute("repo.example", dead, () -> { throw new AssertionError(); }, ree -> rejected.incrementAndGet());
+            }
+            limiter.execute("repo.example", live, done::countDown, UNEXPECTED);
+            assertEquals(4, limiter.waiting("repo.example"));
+            unblock.countDown();
+            assertTrue(done.await(10, TimeUnit.SECONDS)); // the slot passed over the rejected tasks to the last
+            assertEquals(4, rejected.get());
+            assertEquals(0, limiter.waiting("repo.example"));
+        } finally {
+            live.shutdownNow();
+        }
+    }
+
+    @Test
+    public void closedResolverFailsAwait() throws IOException {
+        try (HashResolver hashes = HashResolverTest.newResolver()) {
+            final ConcurrentResolver resolver = new ConcurrentResolver(hashes, 2, 1);
+            resolver.close();
+            resolver.submit(new ArtifactId("g", "a", "1", "a-1.jar"), Collections.singletonList(new Repository("http://repo.example/")),
+                    new ConcurrentHashMap<>());
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertThrows(RejectedExecutionException.class, resolver::awaitAll));
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(2);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class JournalTest {
+
+    private static final Checksum[] SHA256 = { Checksum.SHA256 };
+
+    private static final ArtifactId JAR = new ArtifactId("g.x", "a", "1", "a-1.jar");
+    private static final ArtifactId POM = new ArtifactId("g.x", "a", "1", "a-1.pom");
+    private static final ArtifactId AAR = new ArtifactId("g.y", "b", "2", "b-2.aar");
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void resume() throws IOException {
+        final Path file = dir.resolve("journal.tsv");
+        final Artifact jar = artifact(JAR, 1, Checksum.SHA256);
+        final Artifact pom = artifact(POM, 2, Checksum.SHA256, Checksum.SHA512);
+        try (Journal journal = Journal.open(file, false, SHA256, 0L)) {
+            journal.append(JAR, jar);
+            journal.append(POM, pom);
+        }
+        Files.write(file, "g.y:b:2\tb-2.aar\tmock\tsha256=0123".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND); // torn
+
+        final Artifact aar = artifact(AAR, 3, Checksum.SHA256);
+        try (Journal journal = Journal.open(file, true, SHA256, 0L)) {
+            assertEquals(2, journal.recoveredCount());
+            assertArtifact(jar, journal.recovered(JAR));
+            assertEquals(pom.hashes.get(Checksum.SHA256), journal.recovered(POM).hashes.get(Checksum.SHA256));
+            assertEquals(1, journal.recovered(POM).hashes.size()); // only the configured checksums
+            assertNull(journal.recovered(AAR));
+            journal.append(AAR, aar);
+        }
+
+        try (Journal journal = Journal.open(file, true, SHA256, 0L)) {
+            assertEquals(3, journal.recoveredCount());
+            assertArtifact(aar, journal.recovered(AAR));
+        }
+        try (Journal journal = Journal.open(file, true, new Checksum[] { Checksum.SHA256, Checksum.SHA512 }, 0L)) {
+            assertEquals(1, journal.recoveredCount()); // the others lack a sha512 and must be resolved again
+            assertArtifact(pom, journal.recovered(POM));
+        }
+    }
+
+    @Test
+    public void startOver() throws IOException {
+        final Path file = dir.resolve("journal.tsv");
+        try (Journal journal = Journal.open(file, false, SHA256, 0L)) {
+            journal.append(JAR, artifact(JAR, 1, Checksum.SHA256));
+        }
+        try (Journal journal = Journal.open(file, false, SHA256, 0L)) {
+            assertEquals(0, journal.recoveredCount());
+        }
+        try (Journal journal = Journal.open(file, true, SHA256, 0L)) {
+            assertEquals(0, journal.recoveredCount());
+        }
+        try (Journal journal = Journal.open(dir.resolve("missing/journal.tsv"), true, SHA256, 0L)) {
+            assertEquals(0, journal.recoveredCount());
+        }
+    }
+
+    private static Artifact artifact(ArtifactId id, int seed, Checksum... kinds) {
+        final Map<Checksum, Digest> hashes = new EnumMap<>(Checksum.class);
+        for (Checksum c : kinds) {
+            final byte[] digest = new byte[c.lenBytes];
+            digest[0] = (byte) seed;
+            hashes.put(c, Digest.of(digest));
+        }
+        return new Artifact(id.file, hashes, "mock");
+    }
+
+    private static void assertArtifact(Artifact expected, Artifact actual) {
+        assertEquals(expected.name, actual.name);
+        assertEquals(expected.origin, actual.origin);
+        assertEquals(expected.hashes, actual.hashes);
+    }
+}
@@ -0,0 +1,170 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MetadataMergerTest {
+
+    private static final String SHA256_A = "98ea6e4f216f2fb4b69fff9b3a44842c38686ca685f3f55dc48c5d3fb1107be4";
+    private static final String SHA256_B = "06d383c27db387285858730cbe70b7e0b0e9eaea56e88bab7b1386aef2ead292";
+
+    private static final String METADATA = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<verification-metadata>\n" +
+            "   <configuration>\n" +
+            "      <verify-metadata>true</verify-metadata>\n" +
+            "   </configuration>\n" +
+            "   <components>\n" +
+            "      <!-- kept as written -->\n" +
+            "      <component group=\"g.x\" name=\"a\" version=\"1\">\n" +
+            "         <artifact name=\"a-1.jar\">\n" +
+            "            <sha256 value=\"" + SHA256_A + "\" origin=\"Generated by Gradle\"/>\n" +
+            "         </artifact>\n" +
+            "      </component>\n" +
+            "      <component group=\"g.x\" name=\"c\" version=\"3\">\n" +
+            "         <artifact name=\"c-3.pom\">\n" +
+            "            <pgp value=\"ABCDEF\"/>\n" +
+            "         </artifact>\n" +
+            "      </component>\n" +
+            "   </components>\n" +
+            "</verification-metadata>\n";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void index() throws IOException {
+        final MetadataMerger merger = MetadataMerger.index(write(METADATA));
+        assertEquals(2, merger.componentCount());
+        assertTrue(merger.contains(new ArtifactId("g.x", "a", "1", "a-1.jar")));
+        assertTrue(merger.contains(new ArtifactId("g.x", "c", "3", "c-3.pom")));
+        assertFalse(merger.contains(new ArtifactId("g.x", "a", "1", "a-1.pom")));
+        assertFalse(merger.contains(new ArtifactId("g.x", "b", "2", "b-2.jar")));
+    }
+
+    @Test
+    public void merge() throws IOException {
+        final Path file = write(METADATA);
+        MetadataMerger.index(file).merge(Arrays.asList(
+                component("g.x", "c", "3", artifact("c-3.jar", SHA256_B)),
+                component("g.x", "b", "2", artifact("b-2.jar", SHA256_A)),
+                component("g.x", "a", "1", artifact("a-1.pom", SHA256_B)),
+                component("g.y", "z", "9", artifact("z-9.jar", SHA256_B))
+        ));
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<verification-metadata>\n" +
+                "   <configuration>\n" +
+                "      <verify-metadata>true</verify-metadata>\n" +
+                "   </configuration>\n" +
+                "   <components>\n" +
+                "      <!-- kept as written -->\n" +
+                "      <component group=\"g.x\" name=\"a\" version=\"1\">\n" +
+                "         <artifact name=\"a-1.jar\">\n" +
+                "            <sha256 value=\"" + SHA256_A + "\" origin=\"Generated by Gradle\"/>\n" +
+                "         </artifact>\n" +
+                "         <artifact name=\"a-1.pom\">\n" +
+                "            <sha256 value=\"" + SHA256_B + "\" origin=\"mock\"/>\n" +
+                "         </artifact>\n" +
+                "      </component>\n" +
+                "      <component group=\"g.x\" name=\"b\" version=\"2\">\n" +
+                "         <artifact name=\"b-2.jar\">\n" +
+                "            <sha256 value=\"" + SHA256_A + "\" origin=\"mock\"/>\n" +
+                "         </artifact>\n" +
+                "      </component>\n" +
+                "      <component group=\"g.x\" name=\"c\" version=\"3\">\n" +
+                "         <artifact name=\"c-3.jar\">\n" +
+                "            <sha256 value=\"" + SHA256_B + "\" origin=\"mock\"/>\n" +
+                "         </artifact>\n" +
+                "         <artifact name=\"c-3.pom\">\n" +
+                "            <pgp value=\"ABCDEF\"/>\n" +
+                "         </artifact>\n" +
+                "      </component>\n" +
+                "      <component group=\"g.y\" name=\"z\" version=\"9\">\n" +
+                "         <artifact name=\"z-9.jar\">\n" +
+                "            <sha256 value=\"" + SHA256_B + "\" origin=\"mock\"/>\n" +
+                "         </artifact>\n" +
+                "      </component>\n" +
+                "   </components>\n" +
+                "</verification-metadata>\n", read(file));
+        final MetadataMerger merged = MetadataMerger.index(file);
+        assertEquals(4, merged.componentCount());
+        assertTrue(merged.contains(new ArtifactId("g.x", "c", "3", "c-3.jar")));
+    }
+
+    @Test
+    public void mergeNothing() throws IOException {
+        final Path file = write(METADATA);
+        MetadataMerger.index(file).merge(Collections.emptyList());
+        assertEquals(METADATA, read(file));
+    }
+
+    @Test
+    public void keepsPermissions() throws IOException {
+        final Path file = write(METADATA);
+        Assumptions.assumeTrue(file.getFileSystem().supportedFileAttributeViews().contains("posix"));
+        final Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-r--r--");
+        Files.setPosixFilePermissions(file, permissions);
+        MetadataMerger.index(file).merge(Collections.singletonList(component("g.x", "b", "2", artifact("b-2.jar", SHA256_A))));
+        assertEquals(permissions, Files.getPosixFilePermissions(file));
+    }
+
+    @Test
+    public void keepsEncoding() throws IOException {
+        final String latin1 = METADATA.replace("UTF-8", "ISO-8859-1").replace("kept as written", "kept as written \u00e9");
+        final Path file = Files.write(dir.resolve("verification-metadata.xml"), latin1.getBytes(StandardCharsets.ISO_8859_1));
+        MetadataMerger.index(file).merge(Collections.singletonList(component("g.x", "b", "2", artifact("b-2.jar", SHA256_A))));
+        final String merged = new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1);
+        assertTrue(merged.startsWith("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>"), merged);
+        assertTrue(merged.contains("kept as written \u00e9"), merged);
+        assertTrue(merged.contains("<artifact name=\"b-2.jar\">"), merged);
+    }
+
+    private Path write(String contents) throws IOException {
+        return Files.write(dir.resolve("verification-metadata.xml"), contents.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(Path file) throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+
+    private static Component component(String group, String name, String version, Artifact... artifacts) {
+        return new Component(group, name, version, Arrays.asList(artifacts));
+    }
+
+    private static Artifact artifact(String name, String sha256) {
+        final Map<Checksum, Digest> hashes = new EnumMap<>(Checksum.class);
+        hashes.put(Checksum.SHA256, Digest.fromHex(sha256, 0, sha256.length()));
+        return new Artifact(name, hashes, "mock");
+    }
+}
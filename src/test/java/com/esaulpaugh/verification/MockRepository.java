@@ -0,0 +1,211 @@
+/*
+   Copyright 2022 Evan Saulpaugh
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.esaulpaugh.verification;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An embedded HTTP server that serves a synthetic Maven-layout repository on the loopback interface. Every path is an
+ * artifact whose content is generated deterministically from the path, so no files are needed and any report, e.g.
+ * one from the benchmarks' {@code ReportGenerator}, resolves against it. Checksum files hold the true digests of
+ * that content. Used by the tests and by the resolver benchmark.
+ * <p>
+ * A {@link Profile} sets the response latency and which fraction of paths are missing, lack checksum files, are
+ * served slowly or are large. Each decision is a deterministic function of the path, so runs are reproducible.
+ */
+final class MockRepository implements AutoCloseable {
+
+    static final class Profile {
+        /** added before every response */
+        int latencyMillis = 0;
+        /** fraction of artifacts that do not exist */
+        double notFoundRatio = 0.0;
+        /** fraction of artifacts published without checksum files */
+        double missingSidecarRatio = 0.0;
+        /** fraction of artifacts whose bodies are throttled to {@link #slowBytesPerSecond} */
+        double slowBodyRatio = 0.0;
+        int slowBytesPerSecond = 256 * 1024;
+        /** fraction of artifacts of {@link #largeBytes} instead of {@link #smallBytes} */
+        double largeRatio = 0.0;
+        int smallBytes = 8 * 1024;
+        int largeBytes = 32 * 1024 * 1024;
+
+        /** Reads {@code mock.latency}, {@code mock.notFound}, {@code mock.missingSidecar}, {@code mock.slow} and {@code mock.large}. */
+        static Profile fromSystemProperties() {
+            final Profile p = new Profile();
+            p.latencyMillis = Integer.getInteger("mock.latency", p.latencyMillis);
+            p.notFoundRatio = Double.parseDouble(System.getProperty("mock.notFound", "0"));
+            p.missingSidecarRatio = Double.parseDouble(System.getProperty("mock.missingSidecar", "0"));
+            p.slowBodyRatio = Double.parseDouble(System.getProperty("mock.slow", "0"));
+            p.largeRatio = Double.parseDouble(System.getProperty("mock.large", "0"));
+            return p;
+        }
+    }
+
+    private static final int CHUNK = 8 * 1024;
+
+    private final Profile profile;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ConcurrentHashMap<String, Digest> digests = new ConcurrentHashMap<>();
+    final AtomicLong requests = new AtomicLong();
+    final AtomicLong bytesServed = new AtomicLong();
+
+    MockRepository(Profile profile) throws IOException {
+        this.profile = profile;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.executor = Executors.newCachedThreadPool(r -> {
+            final Thread t = new Thread(r, "mock-repository");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    String url() {
+        return "http://" + server.getAddress().getAddress().getHostAddress() + ':' + server.getAddress().getPort() + '/';
+    }
+
+    /** @param artifactPath the path relative to the repository root, as from {@link ArtifactId#path()} */
+    Digest expected(String artifactPath, Checksum c) {
+        return digests.computeIfAbsent(c.id + ' ' + artifactPath, k -> {
+            final MessageDigest md = c.newMessageDigest();
+            final Random content = content(artifactPath);
+            final byte[] chunk = new byte[CHUNK];
+            for (long remaining = size(artifactPath); remaining > 0; remaining -= CHUNK) {
+                content.nextBytes(chunk);
+                md.update(chunk, 0, (int) Math.min(CHUNK, remaining));
+            }
+            return Digest.of(md.digest());
+        });
+    }
+
+    boolean exists(String artifactPath) {
+        return fraction(artifactPath, 1) >= profile.notFoundRatio;
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        requests.incrementAndGet();
+        try {
+            if (profile.latencyMillis > 0) {
+                Thread.sleep(profile.latencyMillis);
+            }
+            final String path = ex.getRequestURI().getPath().substring(1);
+            final Checksum sidecar = sidecarKind(path);
+            if (sidecar != null) {
+                final String artifactPath = path.substring(0, path.length() - sidecar.id.length() - 1);
+                if (!exists(artifactPath) || fraction(artifactPath, 2) < profile.missingSidecarRatio) {
+                    notFound(ex);
+                    return;
+                }
+                final byte[] body = expected(artifactPath, sidecar).toHex().getBytes(StandardCharsets.US_ASCII);
+                ex.sendResponseHeaders(200, body.length);
+                try (OutputStream out = ex.getResponseBody()) {
+                    out.write(body);
+                }
+                bytesServed.addAndGet(body.length);
+            } else if (!exists(path)) {
+                notFound(ex);
+            } else {
+                serve(ex, path);
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } finally {
+            ex.close();
+        }
+    }
+
+    private void serve(HttpExchange ex, String path) throws IOException, InterruptedException {
+        final long size = size(path);
+        final boolean slow = fraction(path, 3) < profile.slowBodyRatio;
+        final long nanosPerChunk = slow ? CHUNK * 1_000_000_000L / profile.slowBytesPerSecond : 0L;
+        ex.sendResponseHeaders(200, size);
+        final Random content = content(path);
+        final byte[] chunk = new byte[CHUNK];
+        try (OutputStream out = ex.getResponseBody()) {
+            for (long remaining = size; remaining > 0; remaining -= CHUNK) {
+                content.nextBytes(chunk);
+                final int len = (int) Math.min(CHUNK, remaining);
+                out.write(chunk, 0, len);
+                bytesServed.addAndGet(len);
+                if (slow) {
+                    Thread.sleep(nanosPerChunk / 1_000_000L, (int) (nanosPerChunk % 1_000_000L));
+                }
+            }
+        }
+    }
+
+    private static void notFound(HttpExchange ex) throws IOException {
+        ex.sendResponseHeaders(404, -1);
+    }
+
+    private static Checksum sidecarKind(String path) {
+        for (Checksum c : Checksum.values()) {
+            if (path.endsWith('.' + c.id)) {
+                return c;
+            }
+        }
+        return null;
+    }
+
+    private long size(String artifactPath) {
+        return fraction(artifactPath, 4) < profile.largeRatio ? profile.largeBytes : profile.smallBytes;
+    }
+
+    private static Random content(String artifactPath) {
+        return new Random(artifactPath.hashCode());
+    }
+
+    /** @return a value in [0, 1) determined by the path and the salt, uniform across paths */
+    private static double fraction(String path, int salt) {
+        long h = path.hashCode() * 0x9E3779B97F4A7C15L + salt;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return (h >>> 11) * 0x1.0p-53;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /** Serves a repository configured by {@link Profile#fromSystemProperties()} until killed, printing its registry line. */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        final MockRepository repo = new MockRepository(Profile.fromSystemProperties());
+        System.out.println("MavenRepo = " + repo.url());
+        Thread.currentThread().join();
+    }
+}